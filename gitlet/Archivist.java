@@ -0,0 +1,394 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Main.LINK_FOLDER;
+import static gitlet.Main.OBJECTS_FOLDER;
+import static gitlet.Main.PACK_FOLDER;
+
+/** Keeper of the content-addressed object archive in .gitlet/objects.
+ * Every object is filed exactly once under its SHA1 ID, so identical
+ * file versions are shared by every commit that tracks them. A new
+ * object is filed loose, deflated, in a subdirectory named by the first
+ * two characters of its ID; repacking moves every object into a single
+ * pack, where versions of a file are stored as deltas against each
+ * other.
+ * @author Daniel Chung
+ */
+class Archivist {
+
+    /** The Archivist is never instantiated; the archive itself lives
+     * on disk. */
+    private Archivist() {
+    }
+
+    /** Files CONTENTS into the archive unless an object with the same
+     * ID is already there.
+     * @param contents the bytes of the object to be archived.
+     * @return the SHA1 ID under which the contents are filed. */
+    static String store(byte[] contents) {
+        String id = Utils.sha1(contents);
+        store(id, contents);
+        return id;
+    }
+
+    /** Files CONTENTS into the archive under ID unless that object
+     * is already there.
+     * @param id the SHA1 ID of the contents.
+     * @param contents the bytes of the object to be archived. */
+    static void store(String id, byte[] contents) {
+        if (has(id)) {
+            return;
+        }
+        File scratch = scratchFile();
+        try (OutputStream out = new DeflaterOutputStream(
+                Files.newOutputStream(scratch.toPath()))) {
+            out.write(contents);
+        } catch (IOException excp) {
+            scratch.delete();
+            throw Utils.error("Could not archive object %s.", id);
+        }
+        file(scratch, id);
+    }
+
+    /** Files the contents of SOURCE into the archive unless an object
+     * with the same ID is already there. The file is read once, in
+     * fixed-size pieces that are hashed and deflated as they go, so
+     * archiving a file takes the same memory whatever its size.
+     * @param source the file whose contents are to be archived.
+     * @return the SHA1 ID under which the contents are filed. */
+    static String store(File source) {
+        MessageDigest digest = Utils.sha1Digest();
+        File scratch = scratchFile();
+        try (InputStream in = Files.newInputStream(source.toPath());
+             OutputStream out = new DeflaterOutputStream(
+                     Files.newOutputStream(scratch.toPath()))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+                out.write(buffer, 0, n);
+            }
+        } catch (IOException excp) {
+            scratch.delete();
+            throw Utils.error("Could not archive %s.", source);
+        }
+        String id = Utils.hex(digest.digest());
+        if (has(id)) {
+            scratch.delete();
+        } else {
+            file(scratch, id);
+        }
+        return id;
+    }
+
+    /** Return the ID the contents of SOURCE would be filed under, read
+     * in fixed-size pieces without archiving them.
+     * @param source the file whose contents are hashed. */
+    static String hash(File source) {
+        MessageDigest digest = Utils.sha1Digest();
+        try (InputStream in = Files.newInputStream(source.toPath())) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                digest.update(buffer, 0, n);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not read %s.", source);
+        }
+        return Utils.hex(digest.digest());
+    }
+
+    /** Return a new, empty scratch file in the archive, into which an
+     * object is written before it is renamed into place. */
+    private static File scratchFile() {
+        try {
+            OBJECTS_FOLDER.mkdirs();
+            return File.createTempFile("tmp-", null, OBJECTS_FOLDER);
+        } catch (IOException excp) {
+            throw Utils.error("Could not create a scratch file.");
+        }
+    }
+
+    /** Renames the finished object SCRATCH into place under ID, so a
+     * reader never sees half an object.
+     * @param scratch the scratch file holding the deflated object.
+     * @param id the SHA1 ID of the object. */
+    private static void file(File scratch, String id) {
+        File dest = fileOf(id);
+        dest.getParentFile().mkdirs();
+        try {
+            Files.move(scratch.toPath(), dest.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            scratch.delete();
+            throw Utils.error("Could not archive object %s.", id);
+        }
+    }
+
+    /** Return the contents of the object with the given ID.
+     * @param id the SHA1 ID of the object sought.
+     * @return the bytes that were filed under ID. */
+    static byte[] retrieve(String id) {
+        File source = fileOf(id);
+        if (!source.isFile()) {
+            for (Pack pack: packs()) {
+                if (pack.has(id)) {
+                    return pack.retrieve(id);
+                }
+            }
+            throw Utils.error("Object %s is missing from the archive.", id);
+        }
+        try (InputStream in = new InflaterInputStream(
+                Files.newInputStream(source.toPath()))) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+                result.write(buffer, 0, n);
+            }
+            return result.toByteArray();
+        } catch (IOException excp) {
+            throw Utils.error("Object %s is corrupt.", id);
+        }
+    }
+
+    /** Writes the contents of the object with the given ID into DEST,
+     * replacing the file there, or the link, if there is one. A loose
+     * object is inflated straight from its file into DEST a piece at a
+     * time, so its contents are never held whole on the heap or copied
+     * through a scratch file; a packed object, which may need deltas
+     * applied, is rebuilt in memory first.
+     * @param id the SHA1 ID of the object.
+     * @param dest the file written. */
+    static void extract(String id, File dest) {
+        File source = fileOf(id);
+        dest.getParentFile().mkdirs();
+        try {
+            if (!source.isFile()) {
+                byte[] contents = retrieve(id);
+                Files.deleteIfExists(dest.toPath());
+                Files.write(dest.toPath(), contents);
+                return;
+            }
+            try (InputStream in = new InflaterInputStream(
+                    Files.newInputStream(source.toPath()), new Inflater(),
+                    BUFFER_SIZE)) {
+                Files.copy(in, dest.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not write %s: %s", dest,
+                    excp.getMessage());
+        }
+    }
+
+    /** Makes DEST a hard link to an inflated, read-only copy of the
+     * object with the given ID, kept in .gitlet/checkout and made the
+     * first time it is needed, so that every checkout of the same
+     * version shares one file on disk and in the page cache. Where the
+     * file system cannot link, writes DEST as extract does. The copy
+     * must never be written through DEST; its modification time is set
+     * to LINK_MTIME, so a copy that has been written through anyway,
+     * which nothing stops the superuser doing, is noticed and made
+     * again.
+     * @param id the SHA1 ID of the object.
+     * @param dest the file linked. */
+    static void link(String id, File dest) {
+        File cached = new File(LINK_FOLDER, id);
+        try {
+            if (cached.lastModified() != LINK_MTIME) {
+                LINK_FOLDER.mkdirs();
+                File scratch = File.createTempFile("tmp-", null,
+                        LINK_FOLDER);
+                extract(id, scratch);
+                scratch.setLastModified(LINK_MTIME);
+                scratch.setWritable(false, false);
+                Files.move(scratch.toPath(), cached.toPath(),
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            dest.getParentFile().mkdirs();
+            Files.deleteIfExists(dest.toPath());
+            Files.createLink(dest.toPath(), cached.toPath());
+        } catch (IOException | UnsupportedOperationException excp) {
+            extract(id, dest);
+        }
+    }
+
+    /** Return whether an object with the given ID has been archived.
+     * @param id the SHA1 ID of the object sought. */
+    static boolean has(String id) {
+        if (fileOf(id).isFile()) {
+            return true;
+        }
+        for (Pack pack: packs()) {
+            if (pack.has(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Moves every archived object, loose or packed, into one new pack
+     * and removes the loose objects and old packs it replaces. Each
+     * history lists the blob IDs of successive versions of one file;
+     * each version is stored as a delta against the one before it where
+     * that saves space.
+     * @param histories the version histories of every committed file. */
+    static void repack(List<List<String>> histories) {
+        repack(histories, null);
+    }
+
+    /** Moves the archived objects with IDs in KEEP into one new pack and
+     * removes all the loose objects and old packs, dropping the objects
+     * that are not kept. Histories are used as in repack(HISTORIES).
+     * @param histories the version histories of every committed file.
+     * @param keep the IDs of the objects to keep, or null to keep every
+     *             object. */
+    static void repack(List<List<String>> histories, Set<String> keep) {
+        List<String[]> entries = new ArrayList<String[]>();
+        HashSet<String> packed = new HashSet<String>();
+        for (List<String> history: histories) {
+            String previous = null;
+            for (String id: history) {
+                if (keep != null && !keep.contains(id)) {
+                    continue;
+                }
+                if (packed.add(id)) {
+                    entries.add(new String[] {id, previous});
+                }
+                previous = id;
+            }
+        }
+        List<String> loose = looseIDs();
+        for (String id: loose) {
+            if ((keep == null || keep.contains(id)) && packed.add(id)) {
+                entries.add(new String[] {id, null});
+            }
+        }
+        List<Pack> oldPacks = packs();
+        for (Pack pack: oldPacks) {
+            for (String id: pack.ids()) {
+                if ((keep == null || keep.contains(id)) && packed.add(id)) {
+                    entries.add(new String[] {id, null});
+                }
+            }
+        }
+
+        Pack pack = Pack.write(entries);
+        for (Pack old: oldPacks) {
+            if (!old.file().equals(pack.file())) {
+                old.index().delete();
+                old.file().delete();
+            }
+        }
+        for (String id: loose) {
+            fileOf(id).delete();
+            fileOf(id).getParentFile().delete();
+        }
+        _packs = null;
+    }
+
+    /** Return the IDs of the objects written since CUTOFF: the loose
+     * objects modified since then, and every object in a pack written
+     * since then.
+     * @param cutoff a time, in milliseconds since the epoch. */
+    static HashSet<String> recentIDs(long cutoff) {
+        HashSet<String> recent = new HashSet<String>();
+        for (String id: looseIDs()) {
+            if (fileOf(id).lastModified() >= cutoff) {
+                recent.add(id);
+            }
+        }
+        for (Pack pack: packs()) {
+            if (pack.file().lastModified() >= cutoff) {
+                recent.addAll(pack.ids());
+            }
+        }
+        return recent;
+    }
+
+    /** Deletes the scratch files left in the archive by writes that
+     * never finished and that were last modified before CUTOFF.
+     * @param cutoff a time, in milliseconds since the epoch. */
+    static void sweepScratch(long cutoff) {
+        File[] dirs = OBJECTS_FOLDER.listFiles();
+        if (dirs == null) {
+            return;
+        }
+        List<File> candidates = new ArrayList<File>(Arrays.asList(dirs));
+        for (File dir: dirs) {
+            if ((dir.getName().length() == 2
+                    || dir.getName().equals(PACK_FOLDER.getName()))
+                    && dir.isDirectory()) {
+                candidates.addAll(Arrays.asList(dir.listFiles()));
+            }
+        }
+        for (File file: candidates) {
+            if (file.isFile() && file.getName().startsWith("tmp-")
+                    && file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Return the IDs of all loose objects. */
+    static List<String> looseIDs() {
+        List<String> ids = new ArrayList<String>();
+        File[] dirs = OBJECTS_FOLDER.listFiles();
+        if (dirs == null) {
+            return ids;
+        }
+        for (File dir: dirs) {
+            if (dir.getName().length() != 2 || !dir.isDirectory()) {
+                continue;
+            }
+            for (String rest: Utils.plainFilenamesIn(dir)) {
+                if (!rest.startsWith("tmp-")) {
+                    ids.add(dir.getName() + rest);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Return the packs in the archive, which are opened once, by
+     * whichever thread needs them first. */
+    private static synchronized List<Pack> packs() {
+        if (_packs == null) {
+            _packs = Pack.all();
+        }
+        return _packs;
+    }
+
+    /** Return the file in which the object with the given ID is kept.
+     * @param id the SHA1 ID of the object. */
+    static File fileOf(String id) {
+        return Utils.join(OBJECTS_FOLDER, id.substring(0, 2),
+                id.substring(2));
+    }
+
+    /** The modification time of the copies made by link, a second after
+     * the epoch: never smudged in the index, and never the time of a
+     * real write. */
+    private static final long LINK_MTIME = 1000;
+
+    /** Size of the buffer used when reading and inflating objects. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** The packs in the archive, once they have been opened. */
+    private static List<Pack> _packs;
+
+}
@@ -0,0 +1,272 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeMap;
+
+/** Timings of gitlet's on-disk formats and of its bookkeeping, run
+ * outside of any repository as "java gitlet.Benchmark NAME [ARGS...]".
+ * Nothing is written to disk.
+ * @author Daniel Chung
+ */
+public class Benchmark {
+
+    /** Runs the benchmark named by ARGS[0] with the rest of ARGS.
+     * @param args the name of the benchmark and its arguments. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java gitlet.Benchmark codec "
+                    + "[COMMITS [FILES]]");
+            System.out.println("       java gitlet.Benchmark status "
+                    + "[FILES...]");
+            return;
+        }
+        switch (args[0]) {
+        case "codec":
+            codec(args.length > 1 ? Integer.parseInt(args[1]) : COMMITS,
+                    args.length > 2 ? Integer.parseInt(args[2]) : FILES);
+            break;
+        case "status":
+            if (args.length == 1) {
+                status(STATUS_FILES);
+            } else {
+                int[] sizes = new int[args.length - 1];
+                for (int i = 1; i < args.length; i += 1) {
+                    sizes[i - 1] = Integer.parseInt(args[i]);
+                }
+                status(sizes);
+            }
+            break;
+        default:
+            System.out.println("No benchmark with that name exists.");
+        }
+    }
+
+    /** Compares the size and speed of commit records written with Java
+     * object serialization, as they used to be, with the binary records
+     * of Commit and Tree.
+     * @param commits the number of commits to encode and decode.
+     * @param files the number of files tracked by each commit. */
+    private static void codec(int commits, int files) {
+        LegacyCommit[] legacy = new LegacyCommit[commits];
+        Commit[] current = new Commit[commits];
+        Tree[] trees = new Tree[commits];
+        for (int i = 0; i < commits; i += 1) {
+            TreeMap<String, String> blobs = new TreeMap<String, String>();
+            HashMap<String, File> tracked = new HashMap<String, File>();
+            for (int f = 0; f < files; f += 1) {
+                String name = "file" + f + ".txt";
+                blobs.put(name, Utils.sha1(name, Integer.toString(i)));
+                tracked.put(name, new File(name));
+            }
+            trees[i] = new Tree(blobs, new TreeMap<String, String>());
+            current[i] = new Commit(trees[i].id(),
+                    i > 0 ? current[i - 1].sha1() : null,
+                    "Commit number " + i);
+            legacy[i] = new LegacyCommit(current[i], tracked,
+                    new HashMap<String, String>(blobs));
+        }
+
+        for (int round = 0; round < ROUNDS; round += 1) {
+            long size = 0;
+            long start = System.nanoTime();
+            byte[][] serialized = new byte[commits][];
+            for (int i = 0; i < commits; i += 1) {
+                serialized[i] = Utils.serialize(legacy[i]);
+                size += serialized[i].length;
+            }
+            long encoded = System.nanoTime();
+            for (int i = 0; i < commits; i += 1) {
+                deserialize(serialized[i]);
+            }
+            long decoded = System.nanoTime();
+            report(round, "java serialization", size, start, encoded,
+                    decoded);
+
+            size = 0;
+            start = System.nanoTime();
+            byte[][] commitRecords = new byte[commits][];
+            byte[][] treeRecords = new byte[commits][];
+            for (int i = 0; i < commits; i += 1) {
+                commitRecords[i] = current[i].encode();
+                treeRecords[i] = trees[i].encode();
+                size += commitRecords[i].length + treeRecords[i].length;
+            }
+            encoded = System.nanoTime();
+            for (int i = 0; i < commits; i += 1) {
+                new Commit(current[i].sha1(), commitRecords[i]);
+                Tree.decode(trees[i].id(), treeRecords[i]);
+            }
+            decoded = System.nanoTime();
+            report(round, "binary records", size, start, encoded, decoded);
+        }
+    }
+
+    /** Times the comparison of a head commit, an index and a working
+     * directory listing done by status, for trees of each of the given
+     * numbers of files. One file in a hundred is staged, removed,
+     * modified, deleted or untracked, and every other working file
+     * matches its index entry's stat data, so none is read.
+     * @param sizes the numbers of files in the trees compared. */
+    private static void status(int... sizes) {
+        for (int files: sizes) {
+            TreeMap<String, String> head = new TreeMap<String, String>();
+            TreeMap<String, Index.Entry> index =
+                    new TreeMap<String, Index.Entry>();
+            List<WorkingTree.Item> working =
+                    new ArrayList<WorkingTree.Item>();
+            HashMap<String, String> modified = new HashMap<String, String>();
+            for (int f = 0; f < files; f += 1) {
+                String name = String.format("file%08d.txt", f);
+                String id = Utils.sha1(name);
+                int kind = f % CHANGE_RATE;
+                if (kind != 1) {
+                    head.put(name, id);
+                }
+                if (kind != 2) {
+                    String staged = kind == 3 ? Utils.sha1(name, "new") : id;
+                    index.put(name, new Index.Entry(staged, Index.REGULAR,
+                            name.length(), f + 1, f + 1, f + 1));
+                }
+                Index.Entry stat = new Index.Entry(null, Index.REGULAR,
+                        name.length(), f + 1, f + 1, f + 1);
+                if (kind == 4) {
+                    modified.put(name, Utils.sha1(name, "edited"));
+                }
+                if (kind != 5) {
+                    working.add(new WorkingTree.Item(name, stat));
+                }
+            }
+
+            long best = Long.MAX_VALUE;
+            int reported = 0;
+            for (int round = 0; round < STATUS_ROUNDS; round += 1) {
+                long start = System.nanoTime();
+                Status status = new Status(head, index, working,
+                        (path, stat) -> modified.containsKey(path)
+                                ? modified.get(path) : index.get(path).id());
+                best = Math.min(best, System.nanoTime() - start);
+                reported = status.staged().size() + status.removed().size()
+                        + status.modified().size()
+                        + status.untracked().size();
+            }
+            System.out.printf("status %9d files  %8.2f ms  %6d ns/file  "
+                    + "%d reported%n", files, best / (double) NANOS_PER_MILLI,
+                    best / files, reported);
+        }
+    }
+
+    /** Prints one line of results, but only for the last round, the
+     * earlier ones being warm-up.
+     * @param round the number of the round, from 0.
+     * @param format the name of the format measured.
+     * @param size the total number of bytes written.
+     * @param start the time encoding began, in nanoseconds.
+     * @param encoded the time encoding ended.
+     * @param decoded the time decoding ended. */
+    private static void report(int round, String format, long size,
+                               long start, long encoded, long decoded) {
+        if (round == ROUNDS - 1) {
+            System.out.printf("%-20s %12d bytes  encode %6d ms  "
+                    + "decode %6d ms%n", format, size,
+                    (encoded - start) / NANOS_PER_MILLI,
+                    (decoded - encoded) / NANOS_PER_MILLI);
+        }
+    }
+
+    /** Return the commit deserialized from BYTES with Java object
+     * serialization.
+     * @param bytes the serialized commit. */
+    private static LegacyCommit deserialize(byte[] bytes) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(bytes))) {
+            return (LegacyCommit) in.readObject();
+        } catch (IOException | ClassNotFoundException excp) {
+            throw Utils.error("Could not deserialize commit.");
+        }
+    }
+
+    /** A commit with the fields commits had when they were written with
+     * Java object serialization. */
+    private static class LegacyCommit implements Serializable {
+
+        /** A copy of COMMIT as it used to be stored.
+         * @param commit the commit copied.
+         * @param tracked the files the commit tracks.
+         * @param blobs the IDs of the blobs of those files. */
+        LegacyCommit(Commit commit, HashMap<String, File> tracked,
+                     HashMap<String, String> blobs) {
+            _sha1 = commit.sha1();
+            _name = _sha1.substring(0, 6);
+            _message = commit.message();
+            _parentID = commit.parentID();
+            _timestamp = commit.timestamp();
+            _trackedFiles = tracked;
+            _blobs = blobs;
+        }
+
+        /** The commit's SHA1 ID. */
+        private String _sha1;
+
+        /** The commit's nickname. */
+        private String _name;
+
+        /** The commit's message. */
+        private String _message;
+
+        /** The SHA1 ID of the commit's parent. */
+        private String _parentID;
+
+        /** The SHA1 ID of the commit's merge parent. */
+        private String _mergeParentID;
+
+        /** The commit's timestamp. */
+        private Date _timestamp;
+
+        /** The files the commit tracks. */
+        private HashMap<String, File> _trackedFiles;
+
+        /** The IDs of the blobs of those files, keyed by name. */
+        private HashMap<String, String> _blobs;
+
+        /** Whether the commit is a merge commit. */
+        private boolean _isMerge;
+
+        /** The IDs of the heads merged to make the commit. */
+        private String[] _mergeIDs = new String[2];
+
+        /** The version of my serialized form. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** Default number of commits encoded by the codec benchmark. */
+    private static final int COMMITS = 10000;
+
+    /** Default number of files tracked by each of those commits. */
+    private static final int FILES = 100;
+
+    /** Default numbers of files compared by the status benchmark. */
+    private static final int[] STATUS_FILES = {1000, 10000, 100000};
+
+    /** One file in this many is changed in each way by the status
+     * benchmark. */
+    private static final int CHANGE_RATE = 100;
+
+    /** Number of rounds of the status benchmark run for each size, of
+     * which the fastest is reported. */
+    private static final int STATUS_ROUNDS = 10;
+
+    /** Number of rounds run, of which only the last is reported. */
+    private static final int ROUNDS = 3;
+
+    /** Nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000;
+
+}
@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import static gitlet.Main.CWD_PATH;
+
+/** Writes the files of a checkout into the working directory on a
+ * bounded pool of threads, so that inflating blobs and the system calls
+ * that create and write each file overlap instead of running one file at
+ * a time. The number of threads is the setting checkout.workers in the
+ * config, the number of cores by default; 1 writes every file on the
+ * calling thread. Each file is inflated straight from the archive into
+ * place, or, if the setting checkout.hardlink is 1, linked to a shared
+ * read-only copy, for working trees whose files are never edited in
+ * place. Either way every write is attempted, and failures are
+ * reported together once all have finished.
+ * @author Daniel Chung
+ */
+class CheckoutWriter {
+
+    /** Not to be instantiated. */
+    private CheckoutWriter() {
+    }
+
+    /** Writes the blob with each given ID into the working file at its
+     * path, creating directories as needed. Returns only once every
+     * write has finished. If any failed, throws a GitletException naming
+     * the first to fail in order of path and how many others failed, so
+     * the same failures are always reported the same way whatever order
+     * the threads ran in.
+     * @param files the IDs of the blobs to write, keyed by path. */
+    static void write(SortedMap<String, String> files) {
+        boolean link = Config.getLong("checkout.hardlink", 0) != 0;
+        int workers = (int) Math.min(files.size(), Config.getLong(
+                "checkout.workers", Runtime.getRuntime()
+                        .availableProcessors()));
+        List<Future<?>> writes = new ArrayList<Future<?>>(files.size());
+        ExecutorService pool = null;
+        if (workers > 1) {
+            pool = Executors.newFixedThreadPool(workers);
+        }
+        for (Map.Entry<String, String> file: files.entrySet()) {
+            Runnable write = () -> writeOne(file.getKey(), file.getValue(),
+                    link);
+            if (pool != null) {
+                writes.add(pool.submit(write));
+            } else {
+                FutureTask<Void> task = new FutureTask<Void>(write, null);
+                task.run();
+                writes.add(task);
+            }
+        }
+        if (pool != null) {
+            pool.shutdown();
+        }
+
+        String firstPath = null;
+        Throwable firstCause = null;
+        int failures = 0;
+        int i = 0;
+        for (String path: files.keySet()) {
+            try {
+                writes.get(i).get();
+            } catch (ExecutionException excp) {
+                if (failures == 0) {
+                    firstPath = path;
+                    firstCause = excp.getCause();
+                }
+                failures += 1;
+            } catch (InterruptedException excp) {
+                pool.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw Utils.error("Interrupted while writing %s.", path);
+            }
+            i += 1;
+        }
+        if (failures > 0) {
+            throw Utils.error("Could not write %s%s: %s", firstPath,
+                    failures == 1 ? ""
+                            : " and " + (failures - 1) + " other files",
+                    firstCause.getMessage());
+        }
+    }
+
+    /** Writes the blob ID into the working file at PATH, or links it
+     * there if LINK.
+     * @param path the path of the file.
+     * @param id the ID of the blob.
+     * @param link whether the file is linked to a shared copy. */
+    private static void writeOne(String path, String id, boolean link) {
+        File dest = new File(CWD_PATH + path);
+        if (link) {
+            Archivist.link(id, dest);
+        } else {
+            Archivist.extract(id, dest);
+        }
+    }
+
+}
@@ -1,77 +1,56 @@
 package gitlet;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.Serializable;
-import static gitlet.Main.COMMITS_FOLDER;
-
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** An object representing a gitlet commit, which contains
- * pointers to blobs, tracks files, and has its own metadata.
+ * pointers to blobs, tracks files, and has its own metadata. A commit's
+ * SHA1 ID is the hash of its record, so it covers the commit's metadata,
+ * parents and tree, and through the tree the contents of every file,
+ * without any file having to be read again.
+ *
+ * A commit is filed in the archive as a compact binary record: a format
+ * version byte, a byte of flags, the timestamp in milliseconds as a
+ * varint, the 20-byte IDs of the tree, parent and merge parent that the
+ * flags say are present, and the message as a varint length followed by
+ * its UTF-8 bytes.
  * @author Daniel Chung
  */
-public class Commit implements Serializable {
+public class Commit {
 
     /** Constructor for a normal commit.
-     * @param files the files to be tracked by this commit.
-     * @param blobs the blobs which store commit's versions of these files.
+     * @param tree the SHA1 ID of the tree of the files to be tracked
+     *             by this commit.
+     * @param parentID the SHA1 ID of the commit which precedes this one
+     *                 in its branch.
      * @param message the string message associated with this commit. */
-    Commit(HashMap<String, File> files, HashMap<String, Blob> blobs,
-           String message) {
-
+    Commit(String tree, String parentID, String message) {
         _timestamp = new Date(System.currentTimeMillis());
-
-        byte[] totalFileBytes = Utils.serialize(_timestamp);
-        for (File file: files.values()) {
-            byte[] fileBytes = Utils.readContents(file);
-            byte[] temp = new byte[totalFileBytes.length
-                    + fileBytes.length];
-            System.arraycopy(totalFileBytes, 0,
-                    temp, 0, totalFileBytes.length);
-            System.arraycopy(fileBytes, 0,
-                    temp, totalFileBytes.length, fileBytes.length);
-            totalFileBytes = temp;
-        }
-        _sha1 = Utils.sha1(totalFileBytes);
-
-        _name = _sha1.substring(0, 6);
+        _tree = tree;
+        _parentID = parentID;
         _message = message;
-        _trackedFiles = files;
-        _blobs = blobs;
+        _sha1 = Utils.sha1(encode());
     }
 
     /** Constructor for a merge commit.
-     * @param files the files to be tracked by this commit.
-     * @param blobs the blobs which store commit's versions of these files.
+     * @param tree the SHA1 ID of the tree of the files to be tracked
+     *             by this commit.
      * @param message the string message associated with this commit.
      * @param currBranchID the SHA1 ID of the head of the current branch.
      * @param givenBranchID the SHA1 ID of the head of the given branch. */
-    Commit(HashMap<String, File> files, HashMap<String, Blob> blobs,
-           String message, String currBranchID, String givenBranchID) {
-
+    Commit(String tree, String message, String currBranchID,
+           String givenBranchID) {
         _timestamp = new Date(System.currentTimeMillis());
-
-        byte[] totalFileBytes = Utils.serialize(_timestamp);
-        for (File file: files.values()) {
-            byte[] fileBytes = Utils.readContents(file);
-            byte[] temp = new byte[totalFileBytes.length
-                    + fileBytes.length];
-            System.arraycopy(totalFileBytes, 0,
-                    temp, 0, totalFileBytes.length);
-            System.arraycopy(fileBytes, 0,
-                    temp, totalFileBytes.length, fileBytes.length);
-            totalFileBytes = temp;
-        }
-        _sha1 = Utils.sha1(totalFileBytes);
-
-        _name = _sha1.substring(0, 6);
-        _message = message;
-        _trackedFiles = files;
-        _blobs = blobs;
+        _tree = tree;
+        _parentID = currBranchID;
+        _mergeParentID = givenBranchID;
         _isMerge = true;
-        _mergeIDs[0] = currBranchID; _mergeIDs[1] = givenBranchID;
+        _message = message;
+        _sha1 = Utils.sha1(encode());
     }
 
     /** Special constructor for the initial commit, which has the commit
@@ -79,52 +58,84 @@ public class Commit implements Serializable {
     Commit() {
         _message = "initial commit";
         _timestamp = new Date(0);
-        byte[] timestampBytes = Utils.serialize(_timestamp);
-        _sha1 = Utils.sha1(timestampBytes);
-        _name = _sha1.substring(0, 6);
+        _sha1 = Utils.sha1(encode());
+    }
+
+    /** A commit read back from its record in the archive.
+     * @param sha1 the SHA1 ID the commit is filed under.
+     * @param record the bytes of the commit's record. */
+    Commit(String sha1, byte[] record) {
+        ByteBuffer in = ByteBuffer.wrap(record);
+        if (in.get() != FORMAT_VERSION) {
+            throw Utils.error("Commit %s is in an unknown format.", sha1);
+        }
+        int flags = in.get();
+        _sha1 = sha1;
+        _timestamp = new Date(Utils.readVarint(in));
+        if ((flags & HAS_TREE) != 0) {
+            _tree = Utils.readID(in);
+        }
+        if ((flags & HAS_PARENT) != 0) {
+            _parentID = Utils.readID(in);
+        }
+        if ((flags & HAS_MERGE_PARENT) != 0) {
+            _mergeParentID = Utils.readID(in);
+        }
+        _isMerge = (flags & IS_MERGE) != 0;
+        _message = Utils.readString(in);
     }
 
     /** Return the file version contained in one of my blobs.
      * @param fileName the name of the file to retrieve contents from. */
     public byte[] bytesFromBlob(String fileName) {
-        if (!_blobs.containsKey(fileName)) {
+        if (!blobs().containsKey(fileName)) {
             throw new GitletException("File does not exist in that commit.");
         } else {
-            return _blobs.get(fileName).contents();
+            return Archivist.retrieve(blobs().get(fileName));
         }
     }
 
-    /** Retrieve my contents from within a file.
-     * @param file the file form which to retrieve my contents.
-     * @return the commit stored in the file. */
-    Commit fromFile(File file) {
-        return Utils.readObject(file, Commit.class);
-    }
-
-    /** Save this commit by serializing it into a file. */
-    public void save() {
-        File thisCommit = new File(".gitlet/commits/" + _name);
-        Utils.join(COMMITS_FOLDER, (".gitlet/commits/" + _name));
-        try {
-            thisCommit.createNewFile();
-        } catch (IOException ex) {
-            System.out.println("Path leading to file is "
-                    + "imcomplete or malformed.");
+    /** Retrieve the commit recorded in the archive under an ID. The
+     * most recently used commits are kept in a bounded cache, so walking
+     * a long history neither rereads them nor holds all of it in memory.
+     * @param sha1 the SHA1 ID of the commit sought.
+     * @return the commit recorded under that ID. */
+    static Commit fromID(String sha1) {
+        Commit commit = LOADED.get(sha1);
+        if (commit == null) {
+            commit = new Commit(sha1, Archivist.retrieve(sha1));
+            LOADED.put(sha1, commit);
         }
-        Utils.writeObject(thisCommit, this);
+        return commit;
     }
 
-    /** Determine my parent.
-     * @param parent the commit which precedes me in my branch. */
-    public void setParent(Commit parent) {
-        _parent = parent;
+    /** Save this commit by recording it in the object archive under
+     * my SHA1 ID. A commit is immutable once saved. */
+    public void save() {
+        Archivist.store(_sha1, encode());
+        LOADED.put(_sha1, this);
     }
 
-    /** Determine my merge parent.
-     * @param mergeParent the head of the other branch
-     *                    which merged to create me. */
-    public void setMergeParent(Commit mergeParent) {
-        _mergeParent = mergeParent;
+    /** Return my record as it is filed in the archive. */
+    byte[] encode() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FORMAT_VERSION);
+        out.write((_tree != null ? HAS_TREE : 0)
+                | (_parentID != null ? HAS_PARENT : 0)
+                | (_mergeParentID != null ? HAS_MERGE_PARENT : 0)
+                | (_isMerge ? IS_MERGE : 0));
+        Utils.writeVarint(out, _timestamp.getTime());
+        if (_tree != null) {
+            Utils.writeID(out, _tree);
+        }
+        if (_parentID != null) {
+            Utils.writeID(out, _parentID);
+        }
+        if (_mergeParentID != null) {
+            Utils.writeID(out, _mergeParentID);
+        }
+        Utils.writeString(out, _message);
+        return out.toByteArray();
     }
 
     /** Return my SHA1 ID. */
@@ -137,19 +148,35 @@ public class Commit implements Serializable {
         return _message;
     }
 
-    /** Return my parent. */
+    /** Return the SHA1 ID of my parent, or null if I have none. */
+    public String parentID() {
+        return _parentID;
+    }
+
+    /** Return the SHA1 ID of my merge parent, or null if I have none. */
+    public String mergeParentID() {
+        return _mergeParentID;
+    }
+
+    /** Return my parent, read from the archive. */
     public Commit parent() {
-        return _parent;
+        if (_parentID == null) {
+            return null;
+        }
+        return fromID(_parentID);
     }
 
-    /** Return my merge parent. */
+    /** Return my merge parent, read from the archive. */
     public Commit mergeParent() {
-        return _mergeParent;
+        if (_mergeParentID == null) {
+            return null;
+        }
+        return fromID(_mergeParentID);
     }
 
     /** Return whether I even have a merge parent. */
     public boolean hasMergeParent() {
-        return !(_mergeParent == null);
+        return !(_mergeParentID == null);
     }
 
     /** Return my timestamp. */
@@ -157,19 +184,34 @@ public class Commit implements Serializable {
         return _timestamp;
     }
 
-    /** Return the files I track. */
-    public HashMap<String, File> files() {
-        return _trackedFiles;
+    /** Return the SHA1 ID of my tree, or null if I am the initial
+     * commit. */
+    public String treeID() {
+        return _tree;
     }
 
-    /** Return the blobs I contain. */
-    public HashMap<String, Blob> blobs() {
+    /** Return my tree, read from the archive. */
+    public Tree tree() {
+        if (_tree == null) {
+            return Tree.EMPTY;
+        }
+        return Tree.fromID(_tree);
+    }
+
+    /** Return the IDs of the blobs I contain, keyed by file path, in
+     * order of path. The map is read out of my tree the first time it is
+     * asked for. */
+    public TreeMap<String, String> blobs() {
+        if (_blobs == null) {
+            _blobs = tree().files();
+        }
         return _blobs;
     }
 
-    /** Return the SHA1 IDs of the two heads which merged to create me. */
+    /** Return the SHA1 IDs of the two heads which merged to create me,
+     * which are my parent and merge parent. */
     public String[] mergeIDs() {
-        return _mergeIDs;
+        return new String[] {_parentID, _mergeParentID};
     }
 
     /** Return whether I am a merge commit or not. */
@@ -177,40 +219,79 @@ public class Commit implements Serializable {
         return _isMerge;
     }
 
+    /** Commits are the same commit exactly when they have the same
+     * SHA1 ID, however many times they have been read.
+     * @param other the object being compared with me. */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof Commit
+                && ((Commit) other)._sha1.equals(_sha1);
+    }
+
+    /** Return the hash of my SHA1 ID, so commits equal by ID hash alike. */
+    @Override
+    public int hashCode() {
+        return _sha1.hashCode();
+    }
+
     /** A string representation of this commit's SHA1 ID. */
     private String _sha1;
 
-    /** The first 6 characters of this commit's SHA1 ID. This
-     * becomes the commit's "nickname." */
-    private String _name;
-
     /** The message that this commit was initialized with. */
     private String _message;
 
-    /** The commit that precedes this commit. */
-    private Commit _parent;
+    /** The SHA1 ID of the commit that precedes this commit. */
+    private String _parentID;
 
-    /** The commit from another branch which was the head then the
-     * other branch was merged with this commit's branch. In other
-     * words, the merge parent. */
-    private Commit _mergeParent;
+    /** The SHA1 ID of the commit from another branch which was the
+     * head then the other branch was merged with this commit's branch.
+     * In other words, the merge parent. */
+    private String _mergeParentID;
 
     /** The date of the initialization of this commit. As a date,
      * it also contains information like day and time. */
     private Date _timestamp;
 
-    /** The files that this commit tracks. That is, the files
-     * that are saved with this commit. */
-    private HashMap<String, File> _trackedFiles = new HashMap<String, File>();
+    /** The SHA1 ID of the tree of the files that this commit tracks,
+     * or null for the initial commit. Commits whose files agree
+     * share the trees for them in the object archive. */
+    private String _tree;
 
-    /** The blobs that this commit contains. */
-    private HashMap<String, Blob> _blobs = new HashMap<String, Blob>();
+    /** The SHA1 IDs of the blobs that this commit contains, keyed by
+     * the paths of the files they are versions of, once they have been
+     * read out of my tree. */
+    private TreeMap<String, String> _blobs;
 
     /** Whether I am a special merge commit or not. */
     private boolean _isMerge = false;
 
-    /** The SHA1-IDS of the branch heads that merged to create me.
-     * ONLY applies if I am a special merge commit. */
-    private String[] _mergeIDs = new String[2];
+    /** The version of the record format written by encode. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Flag marking a record that holds a tree ID. */
+    private static final int HAS_TREE = 1;
+
+    /** Flag marking a record that holds a parent ID. */
+    private static final int HAS_PARENT = 2;
+
+    /** Flag marking a record that holds a merge parent ID. */
+    private static final int HAS_MERGE_PARENT = 4;
+
+    /** Flag marking the record of a merge commit. */
+    private static final int IS_MERGE = 8;
+
+    /** The most commits kept in the cache of loaded commits. */
+    private static final int CACHE_SIZE = 1024;
+
+    /** The commits most recently read from or saved to the archive by
+     * this process, keyed by SHA1 ID, least recently used first. */
+    private static final LinkedHashMap<String, Commit> LOADED =
+            new LinkedHashMap<String, Commit>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(
+                        Map.Entry<String, Commit> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
 
 }
@@ -0,0 +1,451 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static gitlet.Main.GRAPH_FILE;
+
+/** The shape of the history: every commit in the ledger numbered
+ * densely in the order it was made, which puts parents before their
+ * children, with the numbers of its parents, its timestamp and its
+ * generation, all in primitive arrays. A commit's generation is one more
+ * than the greatest generation of its parents, and 1 if it has none, so
+ * a commit can only be an ancestor of commits of greater generation and
+ * a walk looking for it can stop at any commit of lesser generation.
+ *
+ * The graph is kept in .gitlet/commits/graph, written as "GLCG", a
+ * format version byte and the number of commits; then for each commit
+ * its 20-byte ID, the numbers of its parent and merge parent or -1, its
+ * generation and its timestamp in milliseconds; then the numbers of the
+ * commits in order of ID, for binary search; then the SHA1 digest of
+ * everything before it. Commits made since the file was written are
+ * read from the archive when the graph is loaded and added to the file.
+ * @author Daniel Chung
+ */
+class CommitGraph {
+
+    /** A graph with room for CAPACITY commits and none in it.
+     * @param capacity the number of commits I can hold. */
+    private CommitGraph(int capacity) {
+        _ids = new byte[capacity * ID_BYTES];
+        _parents = new int[capacity];
+        _mergeParents = new int[capacity];
+        _generations = new int[capacity];
+        _timestamps = new long[capacity];
+        _byID = new int[capacity];
+    }
+
+    /** Return the graph of every commit in the ledger, bringing the graph
+     * file up to date if commits have been made since it was written.
+     * @param ledger the IDs of every commit, in the order they were
+     *               made. */
+    static CommitGraph load(List<String> ledger) {
+        CommitGraph graph = read(ledger);
+        if (graph._size < ledger.size()) {
+            for (int i = graph._size; i < ledger.size(); i += 1) {
+                graph.add(Commit.fromID(ledger.get(i)));
+            }
+            graph.write();
+        }
+        return graph;
+    }
+
+    /** Rebuilds the graph file from the ledger, as after the ledger has
+     * been rewritten.
+     * @param ledger the IDs of every commit, in the order they were
+     *               made. */
+    static void rebuild(List<String> ledger) {
+        GRAPH_FILE.delete();
+        load(ledger);
+    }
+
+    /** Return the graph in the graph file with room for every commit in
+     * the ledger, or an empty graph if the file is missing, damaged, or
+     * does not describe a prefix of the ledger.
+     * @param ledger the IDs of every commit, in order. */
+    private static CommitGraph read(List<String> ledger) {
+        if (!GRAPH_FILE.isFile()) {
+            return new CommitGraph(ledger.size());
+        }
+        byte[] contents = Utils.readContents(GRAPH_FILE);
+        int bodyLength = contents.length - ID_BYTES;
+        MessageDigest digest = Utils.sha1Digest();
+        digest.update(contents, 0, Math.max(bodyLength, 0));
+        if (bodyLength < HEADER_BYTES || !Arrays.equals(digest.digest(),
+                Arrays.copyOfRange(contents, bodyLength, contents.length))) {
+            return new CommitGraph(ledger.size());
+        }
+        ByteBuffer in = ByteBuffer.wrap(contents, 0, bodyLength);
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        if (!Arrays.equals(magic, MAGIC) || in.get() != FORMAT_VERSION) {
+            return new CommitGraph(ledger.size());
+        }
+        int size = in.getInt();
+        if (size > ledger.size() || bodyLength != HEADER_BYTES
+                + size * (RECORD_BYTES + Integer.BYTES)) {
+            return new CommitGraph(ledger.size());
+        }
+
+        CommitGraph graph = new CommitGraph(ledger.size());
+        for (int i = 0; i < size; i += 1) {
+            in.get(graph._ids, i * ID_BYTES, ID_BYTES);
+            graph._parents[i] = in.getInt();
+            graph._mergeParents[i] = in.getInt();
+            graph._generations[i] = in.getInt();
+            graph._timestamps[i] = in.getLong();
+        }
+        for (int i = 0; i < size; i += 1) {
+            graph._byID[i] = in.getInt();
+        }
+        graph._size = size;
+        if (size > 0 && !graph.id(size - 1).equals(ledger.get(size - 1))) {
+            return new CommitGraph(ledger.size());
+        }
+        return graph;
+    }
+
+    /** Saves me as the graph file. */
+    private void write() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(FORMAT_VERSION);
+        ByteBuffer body = ByteBuffer.allocate(Integer.BYTES
+                + _size * (RECORD_BYTES + Integer.BYTES));
+        body.putInt(_size);
+        for (int i = 0; i < _size; i += 1) {
+            body.put(_ids, i * ID_BYTES, ID_BYTES);
+            body.putInt(_parents[i]);
+            body.putInt(_mergeParents[i]);
+            body.putInt(_generations[i]);
+            body.putLong(_timestamps[i]);
+        }
+        for (int i = 0; i < _size; i += 1) {
+            body.putInt(_byID[i]);
+        }
+        out.write(body.array(), 0, body.position());
+        MessageDigest digest = Utils.sha1Digest();
+        digest.update(out.toByteArray());
+        out.write(digest.digest(), 0, ID_BYTES);
+        Utils.writeAtomically(GRAPH_FILE, out.toByteArray());
+    }
+
+    /** Adds COMMIT, whose parents I must already hold, as my newest
+     * commit.
+     * @param commit the commit added. */
+    private void add(Commit commit) {
+        int n = _size;
+        byte[] id = Utils.unhex(commit.sha1());
+        System.arraycopy(id, 0, _ids, n * ID_BYTES, ID_BYTES);
+        _parents[n] = commit.parentID() == null
+                ? -1 : indexOf(commit.parentID());
+        _mergeParents[n] = commit.mergeParentID() == null
+                ? -1 : indexOf(commit.mergeParentID());
+        int generation = 0;
+        if (_parents[n] != -1) {
+            generation = _generations[_parents[n]];
+        }
+        if (_mergeParents[n] != -1) {
+            generation = Math.max(generation, _generations[_mergeParents[n]]);
+        }
+        _generations[n] = generation + 1;
+        _timestamps[n] = commit.timestamp().getTime();
+
+        int place = -(search(id) + 1);
+        System.arraycopy(_byID, place, _byID, place + 1, n - place);
+        _byID[place] = n;
+        _size = n + 1;
+    }
+
+    /** Return the position in _byID of the commit whose ID is ID, or, if
+     * I hold no such commit, -(P + 1) where P is the position it would
+     * have.
+     * @param id a 20-byte commit ID. */
+    private int search(byte[] id) {
+        int lo = 0;
+        int hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = Arrays.compareUnsigned(_ids, _byID[mid] * ID_BYTES,
+                    (_byID[mid] + 1) * ID_BYTES, id, 0, ID_BYTES);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(lo + 1);
+    }
+
+    /** Return the number of the commit with the given ID, or -1 if I do
+     * not hold it.
+     * @param id the SHA1 ID of the commit. */
+    int indexOf(String id) {
+        if (id == null || id.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        int place = search(Utils.unhex(id));
+        return place < 0 ? -1 : _byID[place];
+    }
+
+    /** Return the number of the one commit whose ID begins with PREFIX,
+     * -1 if there is none, or AMBIGUOUS if there are several. The
+     * commits whose IDs begin with PREFIX lie together in order of ID,
+     * between the places where PREFIX padded out with 0s and with fs
+     * would go, so two binary searches find them all.
+     * @param prefix the first digits of the ID, in hexadecimal. */
+    int resolve(String prefix) {
+        prefix = prefix.toLowerCase();
+        if (prefix.isEmpty() || prefix.length() > Utils.UID_LENGTH
+                || !prefix.matches("[0-9a-f]+")) {
+            return -1;
+        }
+        int first = search(Utils.unhex(pad(prefix, '0')));
+        int last = search(Utils.unhex(pad(prefix, 'f')));
+        first = first < 0 ? -(first + 1) : first;
+        last = last < 0 ? -(last + 1) : last + 1;
+        if (last - first == 1) {
+            return _byID[first];
+        }
+        return last == first ? -1 : AMBIGUOUS;
+    }
+
+    /** Return PREFIX padded out to the length of an ID with the digit
+     * DIGIT.
+     * @param prefix the first digits of an ID.
+     * @param digit the digit the rest is filled with. */
+    private static String pad(String prefix, char digit) {
+        StringBuilder id = new StringBuilder(prefix);
+        while (id.length() < Utils.UID_LENGTH) {
+            id.append(digit);
+        }
+        return id.toString();
+    }
+
+    /** Return the number of commits I hold. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the ID of commit number N.
+     * @param n the number of the commit. */
+    String id(int n) {
+        return Utils.hex(Arrays.copyOfRange(_ids, n * ID_BYTES,
+                (n + 1) * ID_BYTES));
+    }
+
+    /** Return the number of the parent of commit N, or -1.
+     * @param n the number of the commit. */
+    int parent(int n) {
+        return _parents[n];
+    }
+
+    /** Return the number of the merge parent of commit N, or -1.
+     * @param n the number of the commit. */
+    int mergeParent(int n) {
+        return _mergeParents[n];
+    }
+
+    /** Return the generation of commit N.
+     * @param n the number of the commit. */
+    int generation(int n) {
+        return _generations[n];
+    }
+
+    /** Return the timestamp of commit N, in milliseconds.
+     * @param n the number of the commit. */
+    long timestamp(int n) {
+        return _timestamps[n];
+    }
+
+    /** Return whether commit A is commit B or one of its ancestors. The
+     * walk back from B never goes below A's generation.
+     * @param a the number of the possible ancestor.
+     * @param b the number of the possible descendant. */
+    boolean isAncestor(int a, int b) {
+        int floor = _generations[a];
+        boolean[] seen = new boolean[_size];
+        int[] stack = new int[2 * _size + 1];
+        int top = 0;
+        stack[top++] = b;
+        while (top > 0) {
+            int n = stack[--top];
+            if (n == a) {
+                return true;
+            }
+            if (seen[n] || _generations[n] <= floor) {
+                continue;
+            }
+            seen[n] = true;
+            if (_parents[n] != -1) {
+                stack[top++] = _parents[n];
+            }
+            if (_mergeParents[n] != -1) {
+                stack[top++] = _mergeParents[n];
+            }
+        }
+        return false;
+    }
+
+    /** Return the numbers of the best common ancestors of two commits:
+     * the common ancestors that are not ancestors of any other common
+     * ancestor. There is more than one after a criss-cross merge, and
+     * none if the commits share no history.
+     *
+     * Both commits are painted with a flag, and the flags are spread to
+     * parents in order of decreasing generation, so a commit's flags are
+     * all in place by the time it is taken from the queue. A commit that
+     * carries both flags is a best common ancestor unless it is stale,
+     * that is, below another one, and staleness is spread in turn. The
+     * walk stops once only stale commits are left, which is at the bases
+     * themselves unless some branch of the history still has to reach
+     * them.
+     * @param a the number of one commit.
+     * @param b the number of the other. */
+    int[] mergeBases(int a, int b) {
+        if (a == b) {
+            return new int[] {a};
+        }
+        byte[] flags = new byte[_size];
+        boolean[] queued = new boolean[_size];
+        PriorityQueue<Integer> queue = new PriorityQueue<Integer>(
+                (x, y) -> _generations[x] != _generations[y]
+                        ? Integer.compare(_generations[y], _generations[x])
+                        : Integer.compare(y, x));
+        flags[a] = FROM_A;
+        flags[b] = FROM_B;
+        queue.add(a);
+        queue.add(b);
+        queued[a] = queued[b] = true;
+        int live = 2;
+        int[] bases = new int[0];
+
+        while (live > 0) {
+            int n = queue.poll();
+            queued[n] = false;
+            int paint = flags[n];
+            if ((paint & STALE) == 0) {
+                live -= 1;
+                if (paint == (FROM_A | FROM_B)) {
+                    bases = Arrays.copyOf(bases, bases.length + 1);
+                    bases[bases.length - 1] = n;
+                    paint |= STALE;
+                }
+            }
+            for (int p: new int[] {_parents[n], _mergeParents[n]}) {
+                if (p == -1 || (flags[p] & paint) == paint) {
+                    continue;
+                }
+                boolean wasLive = queued[p] && (flags[p] & STALE) == 0;
+                flags[p] |= paint;
+                if (!queued[p]) {
+                    queued[p] = true;
+                    queue.add(p);
+                }
+                if (!wasLive && (flags[p] & STALE) == 0) {
+                    live += 1;
+                } else if (wasLive && (flags[p] & STALE) != 0) {
+                    live -= 1;
+                }
+            }
+        }
+        return bases;
+    }
+
+    /** Return the number of the split point of two commits: of their
+     * best common ancestors, the one a breadth-first walk back from CURR
+     * reaches first, visiting merge parents before parents. Return -1 if
+     * they have no common ancestor.
+     * @param curr the number of the head of the current branch.
+     * @param given the number of the head of the given branch. */
+    int splitPoint(int curr, int given) {
+        int[] bases = mergeBases(curr, given);
+        if (bases.length <= 1) {
+            return bases.length == 0 ? -1 : bases[0];
+        }
+        boolean[] isBase = new boolean[_size];
+        for (int base: bases) {
+            isBase[base] = true;
+        }
+        boolean[] seen = new boolean[_size];
+        int[] queue = new int[_size];
+        int head = 0;
+        int tail = 0;
+        queue[tail++] = curr;
+        seen[curr] = true;
+        while (head < tail) {
+            int n = queue[head++];
+            if (isBase[n]) {
+                return n;
+            }
+            int merge = _mergeParents[n];
+            if (merge != -1 && !seen[merge]) {
+                seen[merge] = true;
+                queue[tail++] = merge;
+            }
+            int parent = _parents[n];
+            if (parent != -1 && !seen[parent]) {
+                seen[parent] = true;
+                queue[tail++] = parent;
+            }
+        }
+        return -1;
+    }
+
+    /** Returned by resolve for a prefix of more than one commit's ID. */
+    static final int AMBIGUOUS = -2;
+
+    /** The bytes that begin every graph file. */
+    private static final byte[] MAGIC = {'G', 'L', 'C', 'G'};
+
+    /** The version of the format written by write. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Flag of commits reached from the first commit of a merge base
+     * query. */
+    private static final byte FROM_A = 1;
+
+    /** Flag of commits reached from the second commit. */
+    private static final byte FROM_B = 2;
+
+    /** Flag of commits below a merge base, which cannot be one. */
+    private static final byte STALE = 4;
+
+    /** Length of a binary commit ID. */
+    private static final int ID_BYTES = Utils.UID_LENGTH / 2;
+
+    /** Length of the magic, version and count that begin the file. */
+    private static final int HEADER_BYTES = 4 + 1 + Integer.BYTES;
+
+    /** Length of the record of one commit. */
+    private static final int RECORD_BYTES = ID_BYTES + 3 * Integer.BYTES
+            + Long.BYTES;
+
+    /** The 20-byte IDs of my commits, one after another. */
+    private final byte[] _ids;
+
+    /** The number of each commit's parent, or -1. */
+    private final int[] _parents;
+
+    /** The number of each commit's merge parent, or -1. */
+    private final int[] _mergeParents;
+
+    /** Each commit's generation. */
+    private final int[] _generations;
+
+    /** Each commit's timestamp, in milliseconds. */
+    private final long[] _timestamps;
+
+    /** The numbers of my commits, in order of ID. */
+    private final int[] _byID;
+
+    /** The number of commits I hold. */
+    private int _size;
+
+}
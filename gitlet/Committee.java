@@ -2,21 +2,37 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
-import static gitlet.Main.COMMITS_FOLDER;
+import static gitlet.Main.HEAD_FILE;
+import static gitlet.Main.LEDGER_FILE;
+import static gitlet.Main.REFS_FOLDER;
 import static gitlet.Reporter.GITLET_FORMAT;
 
 /** The controller class that has access to all commits. Has the
  * authority to add commits and perform branch operations as well
  * as fetch commit-related data.
+ *
+ * Nothing here is saved wholesale. Commits are immutable records in
+ * the object archive, written once when they are made, and their IDs
+ * are appended to the ledger. Each branch is a small ref file holding
+ * the ID of its head, and the HEAD file names the current branch, so a
+ * command only rewrites the refs it actually changes.
  * @author Daniel Chung
  */
-public class Committee implements Serializable {
+public class Committee {
 
     /** A new committee containing a special initial commit and
      * only one (master) branch. */
@@ -24,55 +40,98 @@ public class Committee implements Serializable {
         makeInitCommit();
     }
 
+    /** A committee over an existing repository, which will read its
+     * branches and commits from the .gitlet directory as needed.
+     * @param currBranchName the name of the current branch. */
+    private Committee(String currBranchName) {
+        _currBranchName = currBranchName;
+        for (String branch: Utils.plainFilenamesIn(REFS_FOLDER)) {
+            _branches.put(branch, readContentsOf(
+                    Utils.join(REFS_FOLDER, branch)));
+        }
+        _head = Commit.fromID(_branches.get(currBranchName));
+    }
+
     /** Writes a log containing SHA1 ID, timestamp, merge data, and
-     * commit message of the head commit and all of its parents.
-     * @return an ArrayList of string arrays, one for each commit,
-     * containing (in order) its SHA1 ID, timestamp, merge data, and
+     * commit message of the head commit and all of its parents. The
+     * log is written lazily: the way back through first parents is
+     * followed in the commit graph, and each commit is read from the
+     * archive only when its entry is reached, so a reader that stops
+     * early never touches the rest of the history.
+     * @return the entries of the log, one string array for each commit,
+     * containing (in order) its SHA1 ID, merge data, timestamp, and
      * commit message. */
-    ArrayList<String[]> writeLog() {
-        ArrayList<String[]> logList = new ArrayList<String[]>();
-        Commit currCommit = _head;
-        while (currCommit != null) {
-
-            String[] commitData = new String[4];
-            commitData[0] = currCommit.sha1();
-            if (currCommit.isMerge()) {
-                String[] mergeIDs = currCommit.mergeIDs();
-                commitData[1] = mergeIDs[0].substring(0, 7)
-                        + " " + mergeIDs[1].substring(0, 7);
+    Iterable<String[]> writeLog() {
+        final CommitGraph graph = graph();
+        final int headNumber = graph.indexOf(_head.sha1());
+        return new Iterable<String[]>() {
+            @Override
+            public Iterator<String[]> iterator() {
+                return new Iterator<String[]>() {
+                    @Override
+                    public boolean hasNext() {
+                        return _next != -1;
+                    }
+
+                    @Override
+                    public String[] next() {
+                        if (_next == -1) {
+                            throw new NoSuchElementException();
+                        }
+                        Commit commit = Commit.fromID(graph.id(_next));
+                        _next = graph.parent(_next);
+                        return logEntry(commit);
+                    }
+
+                    /** The number of the commit whose entry comes next. */
+                    private int _next = headNumber;
+                };
             }
-            commitData[2] = GITLET_FORMAT.format(currCommit.timestamp());
-            commitData[3] = currCommit.message();
-
-            logList.add(commitData);
-
-            currCommit = currCommit.parent();
-        }
-        return logList;
+        };
     }
 
     /** Writes a log containing SHA1 ID, timestamp, merge data, and
      * commit message of ALL COMMITS saved in this gitlet directory.
-     * @return an ArrayList of string arrays, one for each commit,
-     * containing (in order) its SHA1 ID, timestamp, merge data, and
+     * Like writeLog, each commit is read only when its entry is reached.
+     * @return the entries of the log, one string array for each commit,
+     * containing (in order) its SHA1 ID, merge data, timestamp, and
      * commit message. */
-    ArrayList<String[]> writeGlobalLog() {
-        ArrayList<String[]> logList = new ArrayList<String[]>();
-        for (Commit commit: _allIDs.values()) {
-
-            String[] commitData = new String[4];
-            commitData[0] = commit.sha1();
-            if (commit.isMerge()) {
-                String[] mergeIDs = commit.mergeIDs();
-                commitData[1] = mergeIDs[0].substring(0, 7)
-                        + " " + mergeIDs[1].substring(0, 7);
+    Iterable<String[]> writeGlobalLog() {
+        final List<String> ids = allIDs();
+        return new Iterable<String[]>() {
+            @Override
+            public Iterator<String[]> iterator() {
+                final Iterator<String> idIterator = ids.iterator();
+                return new Iterator<String[]>() {
+                    @Override
+                    public boolean hasNext() {
+                        return idIterator.hasNext();
+                    }
+
+                    @Override
+                    public String[] next() {
+                        return logEntry(Commit.fromID(idIterator.next()));
+                    }
+                };
             }
-            commitData[2] = GITLET_FORMAT.format(commit.timestamp());
-            commitData[3] = commit.message();
-
-            logList.add(commitData);
+        };
+    }
+
+    /** Return the log entry of a commit.
+     * @param commit the commit being logged.
+     * @return a string array containing (in order) its SHA1 ID, merge
+     * data, timestamp, and commit message. */
+    private static String[] logEntry(Commit commit) {
+        String[] commitData = new String[4];
+        commitData[0] = commit.sha1();
+        if (commit.isMerge()) {
+            String[] mergeIDs = commit.mergeIDs();
+            commitData[1] = mergeIDs[0].substring(0, 7)
+                    + " " + mergeIDs[1].substring(0, 7);
         }
-        return logList;
+        commitData[2] = GITLET_FORMAT.format(commit.timestamp());
+        commitData[3] = commit.message();
+        return commitData;
     }
 
     /** Returns a list of commit IDs whose commits have the
@@ -80,25 +139,25 @@ public class Committee implements Serializable {
      * @param message the commit message query.
      * @return a list of commit IDs whose commits have message. */
     ArrayList<String> findByMessage(String message) {
-        if (!_allCommits.containsKey(message)) {
+        ArrayList<String> commitsNames = new ArrayList<String>();
+        for (String id: allIDs()) {
+            if (Commit.fromID(id).message().equals(message)) {
+                commitsNames.add(id);
+            }
+        }
+        if (commitsNames.isEmpty()) {
             System.out.println("Found no commit with that message.");
             return null;
-        } else {
-            ArrayList<Commit> commitsFound = _allCommits.get(message);
-            ArrayList<String> commitsNames = new ArrayList<String>();
-            for (Commit commit: commitsFound) {
-                commitsNames.add(commit.sha1());
-            }
-            return commitsNames;
         }
+        return commitsNames;
     }
 
-    /** Returns the file with name fileName if it exists and is tracked by
-     * the current head commit.
+    /** Returns the ID of the blob of the file with name fileName if it
+     * exists and is tracked by the current head commit.
      * @param fileName the name of the file being searched for in current head.
-     * @return the file with name fileName, if it exists. */
-    File findFile(String fileName) {
-        HashMap<String, File> headFiles = _head.files();
+     * @return the ID of the blob of file fileName, if it exists. */
+    String findFile(String fileName) {
+        Map<String, String> headFiles = _head.blobs();
         if (!headFiles.containsKey(fileName)) {
             System.out.println("File does not exist in that commit.");
             return null;
@@ -107,37 +166,17 @@ public class Committee implements Serializable {
         }
     }
 
-    /** Returns true if a file with name fileName exists and is tracked by
-     * the current head commit.
-     * @param fileName the name of the file to verify exists or not.
-     * @return whether a file with name fileName exists in the current head. */
-    boolean hasFile(String fileName) {
-        HashMap<String, File> headFiles = _head.files();
-        if (!headFiles.containsKey(fileName)) {
-            return false;
-        }
-        return true;
-    }
-
     /** Returns the file with name fileName if it exists and is tracked by
      * the current head commit.
      * @param fileName the name of the file whose version is needed.
      * @param sha1 the ID of the commit whose version of the file is sought.
      * @return a byte array representing the contents of that file version. */
     byte[] findFileVersion(String fileName, String sha1) {
-        if (!_allIDs.containsKey(sha1)) {
-            for (String id: _allIDs.keySet()) {
-                CharSequence abbreviation = sha1;
-                if (id.contains(sha1)) {
-                    sha1 = id;
-                }
-            }
-            if (!_allIDs.containsKey(sha1)) {
-                System.out.println("No commit with that id exists.");
-                return null;
-            }
+        sha1 = resolveID(sha1);
+        if (sha1 == null) {
+            return null;
         }
-        Commit commit = _allIDs.get(sha1);
+        Commit commit = Commit.fromID(sha1);
 
         if (!commit.blobs().containsKey(fileName)) {
             System.out.println("File does not exist in that commit.");
@@ -147,29 +186,6 @@ public class Committee implements Serializable {
         }
     }
 
-    /** Returns all files that exist and are tracked by the given commit.
-     * @param sha1 the ID of the commit whose file versions are sought.
-     * @return a mapping of file names to byte arrays representing their
-     * contents. Each file listed exists in the commit with this ID. */
-    HashMap<String, byte[]> findFileVersions(String sha1) {
-        HashMap<String, byte[]> fileBytes = new HashMap<String, byte[]>();
-        if (!_allIDs.containsKey(sha1)) {
-            System.out.println("No commit with that id exists.");
-            return null;
-        }
-        Commit commit = _allIDs.get(sha1);
-
-        for (String fileName: commit.files().keySet()) {
-            if (!commit.blobs().containsKey(fileName)) {
-                System.out.println("File does not exist in that commit.");
-                return null;
-            } else {
-                fileBytes.put(fileName, commit.bytesFromBlob(fileName));
-            }
-        }
-        return fileBytes;
-    }
-
     /** Background checks the branch being searched for. Will notify user
      * however if the branch doesn't exist or if branch is the currBranch.
      * Returns true if the branch exists, and false if it doesn't.
@@ -187,151 +203,86 @@ public class Committee implements Serializable {
         }
     }
 
-    /** Retrieves a mapping of fileNames to byte arrays from each of the
-     * file version stored in the head commit of a given branch.
-     * @param branch the name of the branch whose file contents are sought.
-     * @return a mapping of file names to byte arrays representing the file
-     * contents of the files tracked by the head of the specified branch. */
-    HashMap<String, byte[]> headBytesOfBranch(String branch) {
-        Commit head = _branches.get(branch);
-        return findFileVersions(head.sha1());
-    }
-
-    /** Returns a list of string file names for all files tracked by the
-     * current head commit.
-     * @return a list of file names for files tracked by the current head. */
-    ArrayList<String> trackedFiles() {
-        ArrayList<String> headFiles = new ArrayList<String>();
-        for (String fileName: _head.files().keySet()) {
-            headFiles.add(fileName);
-        }
-        return headFiles;
-    }
-
-    /** Returns a list of string file names for all files tracked by
-     * the head of the specified branch.
-     * @param branch the name of the branch whose tracked files are sought.
-     * @return a list of names of the files tracked by the head of the
-     * specified branch.*/
-    ArrayList<String> trackedFilesOfBr(String branch) {
-        ArrayList<String> headFiles = new ArrayList<String>();
-        for (String fileName: _branches.get(branch).files().keySet()) {
-            headFiles.add(fileName);
-        }
-        return headFiles;
-    }
-
-    /** Returns a list of string file names for all files tracked by the
-     * given commit.
-     * @param sha1 the ID of the commit whose tracked files are sought.
-     * @return a list of names of the files tracked by that commit. */
-    ArrayList<String> trackedFilesOfCom(String sha1) {
-        ArrayList<String> headFiles = new ArrayList<String>();
-        if (!_allIDs.containsKey(sha1)) {
-            for (String id: _allIDs.keySet()) {
-                CharSequence abbreviation = sha1;
-                if (id.contains(sha1)) {
-                    sha1 = id;
-                }
-            }
-            if (!_allIDs.containsKey(sha1)) {
-                System.out.println("No commit with that id exists.");
-                return null;
-            }
+    /** Returns the IDs of the blobs of all files tracked by the given
+     * commit, keyed by file name.
+     * @param sha1 the full or abbreviated ID of the commit.
+     * @return the IDs of the blobs of its files, or null if there is no
+     * such commit. */
+    Map<String, String> blobsOfCom(String sha1) {
+        sha1 = resolveID(sha1);
+        if (sha1 == null) {
+            return null;
         }
-        Commit commit = _allIDs.get(sha1);
-        for (String fileName: commit.files().keySet()) {
-            headFiles.add(fileName);
+        return Commit.fromID(sha1).blobs();
+    }
+
+    /** Returns the full ID of the commit whose ID begins with the given
+     * (possibly abbreviated) ID, looked up in the commit graph. Prints an
+     * error and returns null if there is no such commit, or if more than
+     * one commit's ID begins with it.
+     * @param sha1 the full or abbreviated ID of the commit sought.
+     * @return the full ID of that commit, or null. */
+    String resolveID(String sha1) {
+        CommitGraph graph = graph();
+        int n = graph.resolve(sha1);
+        if (n == CommitGraph.AMBIGUOUS) {
+            System.out.println("Commit id " + sha1 + " is ambiguous.");
+            return null;
+        } else if (n == -1) {
+            System.out.println("No commit with that id exists.");
+            return null;
         }
-        return headFiles;
+        return graph.id(n);
     }
 
-    /** Returns the candidate split point closest to the head of the
-     * current branch. That is, the split point reachable by the
-     * fewest parent pointers.
+    /** Returns the split point of two branches: of the best common
+     * ancestors of their heads, as found by CommitGraph.mergeBases, the
+     * one nearest the head of the current branch, found by a
+     * breadth-first walk back from it that follows merge parents first.
      * @param currBranch the name of the current branch.
      * @param givenBranch the name of the branch to be merged into currBranch.
-     * @return the closest shared ancestral commit between the two branches. */
+     * @return the split point of the two branches, or null if they have
+     * none. */
     Commit findSplitPoint(String currBranch, String givenBranch) {
-        List<Commit> givenPath = new ArrayList<Commit>();
-        givenPath = totalPathOf(_branches.get(givenBranch), givenPath);
-
-        return seekFrom(_branches.get(currBranch), givenPath);
-    }
-
-    /** Helper method for findSplitPoint. Returns a list of commits
-     * in the path of a given branch starting from its head, including
-     * branching from merge parents.
-     * @param head the head of the branch whose path is sought.
-     * @param path the list containing all commits along the path so far.
-     * @return this list of all commits along the path. */
-    private List<Commit> totalPathOf(Commit head, List<Commit> path) {
-        if (head == null) {
-            return path;
-        } else {
-            if (!path.contains(head)) {
-                path.add(head);
-            }
-            if (head.hasMergeParent()) {
-                path.addAll(totalPathOf(head.mergeParent(), path));
-            }
-            path.addAll(totalPathOf(head.parent(), path));
-        }
-        return path;
-    }
-
-    /** Helper method for findSplitPoint. Returns the first commit in
-     * the path of one branch that also occurs in the path of another.
-     * In other words, the closest splitPoint. Returns null if no such
-     * splitPoint exists.
-     * @param head the head of the current, "seeker" branch in this merge.
-     * @param path the total path of the other (given) branch in this merge.
-     * @return the closest shared ancestral commit between the two branches. */
-    private Commit seekFrom(Commit head, List<Commit> path) {
-        LinkedList<Commit> queue = new LinkedList<Commit>();
-        while (true) {
-            if (head == null) {
-                return null;
-            }
-            if (path.contains(head)) {
-                return head;
-            } else {
-                if (head.hasMergeParent()) {
-                    queue.add(head.mergeParent());
-                }
-                queue.add(head.parent());
-                head = queue.pop();
-            }
+        CommitGraph graph = graph();
+        int split = graph.splitPoint(
+                graph.indexOf(_branches.get(currBranch)),
+                graph.indexOf(_branches.get(givenBranch)));
+        return split == -1 ? null : Commit.fromID(graph.id(split));
+    }
+
+    /** Return whether one commit is the other or one of its ancestors.
+     * @param ancestorID the ID of the possible ancestor.
+     * @param descendantID the ID of the possible descendant. */
+    boolean isAncestor(String ancestorID, String descendantID) {
+        CommitGraph graph = graph();
+        return graph.isAncestor(graph.indexOf(ancestorID),
+                graph.indexOf(descendantID));
+    }
+
+    /** Return the commit graph, loading it, and bringing it up to date
+     * with the ledger, the first time it is needed. */
+    CommitGraph graph() {
+        if (_graph == null) {
+            _graph = CommitGraph.load(allIDs());
         }
+        return _graph;
     }
 
-    /** Sets the current head to be commit newHead.
+    /** Sets the current head to be commit newHead, moving the current
+     * branch along with it.
      * @param newHead the commit which will become the new head. */
     void updateHead(Commit newHead) {
         _head = newHead;
-        if (_currBranch != newHead) {
-            _currBranch = newHead;
-            _branches.replace(_currBranchName, newHead);
-        }
+        _branches.put(_currBranchName, newHead.sha1());
+        writeRef(_currBranchName, newHead.sha1());
     }
 
     /** Sets the current head to be an older commit with the given
      * SHA1 ID, which it assumes exists. Also, poly whorf schism.
      * @param sha1 the ID of the commit which will become the new head. */
     void updateHead(String sha1) {
-        Commit newHead = _allIDs.get(sha1);
-        updateHead(newHead);
-    }
-
-    /** Sets the current branch to point to commit newHead.
-     * @param newHead the commit which will become the new head of
-     *                the current branch. */
-    void updateBranch(Commit newHead) {
-        _currBranch = newHead;
-        _branches.replace(_currBranchName, newHead);
-        if (_head != newHead) {
-            _head = newHead;
-        }
+        updateHead(Commit.fromID(resolveID(sha1)));
     }
 
     /** Sets head to the head commit of the given branch. Also,
@@ -339,105 +290,68 @@ public class Committee implements Serializable {
      * @param branch the name of the branch which will become the current
      *              branch and whose head will become the current head. */
     void updateBranch(String branch) {
-        _currBranch = _branches.get(branch);
-        if (_head != _currBranch) {
-            _head = _currBranch;
-        }
+        _head = headOf(branch);
         _currBranchName = branch;
+        Utils.writeContents(HEAD_FILE, branch);
     }
 
-    /** Initializes a new commit and stores its data.
-     * @param trackedFiles thefiles staged for addition into this commit.
-     * @param blobs the blobs which store the versions of said files
+    /** Initializes a new commit and stores its data. Only the trees
+     * along the paths of the changed files are written; every other
+     * tree is shared with the current head.
+     * @param blobs the IDs of the blobs which store the versions of the
+     *              files staged for addition into this commit.
      * @param message the string message associated with this commit.
      * @param toRemove the files to remove from this commit's tracking list. */
-    void makeCommit(HashMap<String, File> trackedFiles, HashMap<String,
-            Blob> blobs, String message, List<String> toRemove) {
-
-        HashMap<String, File> cumulativeFiles = new HashMap<String, File>();
-        cumulativeFiles.putAll(_head.files());
-        cumulativeFiles.putAll(trackedFiles);
-
-        HashMap<String, Blob> cumulativeBlobs = new HashMap<String, Blob>();
-        cumulativeBlobs.putAll(_head.blobs());
-        cumulativeBlobs.putAll(blobs);
-
-        for (String removeMe: toRemove) {
-            cumulativeFiles.remove(removeMe);
-            cumulativeBlobs.remove(removeMe);
-        }
-
-        Commit newCommit = new Commit(cumulativeFiles,
-                cumulativeBlobs, message);
-
-        ArrayList<Commit> commitContainer = new ArrayList<Commit>();
-        if (_allCommits.containsKey(message)) {
-            commitContainer = _allCommits.get(message);
-        }
-        commitContainer.add(newCommit);
-
-        _allCommits.put(message, commitContainer);
-        _allIDs.put(newCommit.sha1(), newCommit);
-        newCommit.setParent(_head);
+    void makeCommit(Map<String, String> blobs, String message,
+                    Collection<String> toRemove) {
+        Tree tree = _head.tree().update(blobs, toRemove);
+        Commit newCommit = new Commit(tree.id(), _head.sha1(), message);
+        record(newCommit);
         updateHead(newCommit);
-        newCommit.save();
     }
 
     /** Initializes a new special merge commit and stores its data.
-     * @param trackedFiles thefiles staged for addition into this commit.
-     * @param blobs the blobs which store the versions of said files.
+     * @param blobs the IDs of the blobs which store the versions of the
+     *              files staged for addition into this commit.
      * @param message the string message associated with this commit.
      * @param toRemove the files to remove from this commit's tracking list.
      * @param currID the ID of the head of the current branch.
      * @param givenID the ID of the head of the branch that merged into the
      *                current branch to create this commit. */
-    void makeMergeCommit(HashMap<String, File> trackedFiles, HashMap<String,
-            Blob> blobs, String message, List<String> toRemove,
-                         String currID, String givenID) {
-
-        HashMap<String, File> cumulativeFiles = new HashMap<String, File>();
-        cumulativeFiles.putAll(_head.files());
-        cumulativeFiles.putAll(trackedFiles);
-
-        HashMap<String, Blob> cumulativeBlobs = new HashMap<String, Blob>();
-        cumulativeBlobs.putAll(_head.blobs());
-        cumulativeBlobs.putAll(blobs);
-
-        for (String removeMe: toRemove) {
-            cumulativeFiles.remove(removeMe);
-            cumulativeBlobs.remove(removeMe);
-        }
-
-        Commit newCommit = new Commit(cumulativeFiles, cumulativeBlobs,
-                message, currID, givenID);
-
-        ArrayList<Commit> commitContainer = new ArrayList<Commit>();
-        if (_allCommits.containsKey(message)) {
-            commitContainer = _allCommits.get(message);
-        }
-        commitContainer.add(newCommit);
-
-        _allCommits.put(message, commitContainer);
-        _allIDs.put(newCommit.sha1(), newCommit);
-        newCommit.setParent(_head);
-        newCommit.setMergeParent(_allIDs.get(givenID));
+    void makeMergeCommit(Map<String, String> blobs, String message,
+                         Collection<String> toRemove, String currID,
+                         String givenID) {
+        Tree tree = _head.tree().update(blobs, toRemove);
+        Commit newCommit = new Commit(tree.id(), message,
+                currID, givenID);
+        record(newCommit);
         updateHead(newCommit);
-        newCommit.save();
     }
 
     /** Initializes the special case initial commit, which has the commit
      * message "initial commit" and a timestamp of the unix epoch. */
     void makeInitCommit() {
         Commit initCommit = new Commit();
-        ArrayList<Commit> commitContainer = new ArrayList<Commit>();
-        commitContainer.add(initCommit);
-        _allCommits.put("initial commit", commitContainer);
-        _allIDs.put(initCommit.sha1(), initCommit);
-        _branches.put("master", initCommit);
-        updateHead(initCommit);
+        record(initCommit);
         _currBranchName = "master";
-        initCommit.save();
+        Utils.writeContents(HEAD_FILE, _currBranchName);
+        updateHead(initCommit);
+    }
 
+    /** Writes a newly made commit into the archive and appends its ID
+     * to the ledger of all commits. Existing records are never
+     * rewritten.
+     * @param commit the commit to be recorded. */
+    private void record(Commit commit) {
+        commit.save();
+        try {
+            Files.write(LEDGER_FILE.toPath(),
+                    (commit.sha1() + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException ex) {
+            throw Utils.error("Could not record commit %s.", commit.sha1());
+        }
+        _graph = null;
     }
 
     /** Creates a new branch pointer to the current head.
@@ -447,7 +361,8 @@ public class Committee implements Serializable {
             System.out.println("A branch with that name already exists.");
             return;
         }
-        _branches.put(branch, _head);
+        _branches.put(branch, _head.sha1());
+        writeRef(branch, _head.sha1());
     }
 
     /** Removes the branch, but just its pointer, not any of its commits.
@@ -461,28 +376,133 @@ public class Committee implements Serializable {
             return;
         } else {
             _branches.remove(branch);
+            Utils.join(REFS_FOLDER, branch).delete();
         }
     }
 
-    /** Retrieve my contents from within a file.
-     * @param file the file from which to retrieve my contents.
-     * @return the committee contained inside this file. */
-    static Committee fromFile(File file) {
-        return Utils.readObject(file, Committee.class);
+    /** Read the committee of the repository in the current directory
+     * from its HEAD and ref files. Commits are only read from the
+     * archive once they are needed.
+     * @return the committee of the current repository. */
+    static Committee load() {
+        return new Committee(readContentsOf(HEAD_FILE));
     }
 
-    /** Save this committee by serializing it into a file. */
-    void save() {
-        File thisCommittee = new File(".gitlet/commits/"
-                + "committee");
-        Utils.join(COMMITS_FOLDER, (".gitlet/commits/" + "committee"));
+    /** Points the ref file of a branch at a commit.
+     * @param branch the name of the branch.
+     * @param sha1 the ID of the commit at the head of that branch. */
+    private void writeRef(String branch, String sha1) {
+        Utils.writeContents(Utils.join(REFS_FOLDER, branch), sha1);
+    }
+
+    /** Return the IDs of every commit ever made in this repository,
+     * in the order in which they were made, as listed in the ledger. */
+    List<String> allIDs() {
+        List<String> ids = new ArrayList<String>();
+        for (String id: readContentsOf(LEDGER_FILE).split("\n")) {
+            if (!id.isEmpty()) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /** Return the version history of every file ever committed: for
+     * each file name, the IDs of the blobs holding its successive
+     * versions, in the order they were committed. */
+    List<List<String>> blobHistories() {
+        HashMap<String, List<String>> histories =
+                new HashMap<String, List<String>>();
+        for (String id: allIDs()) {
+            Commit commit = Commit.fromID(id);
+            for (String fileName: commit.blobs().keySet()) {
+                String blob = commit.blobs().get(fileName);
+                List<String> history = histories.get(fileName);
+                if (history == null) {
+                    history = new ArrayList<String>();
+                    histories.put(fileName, history);
+                }
+                if (history.isEmpty()
+                        || !history.get(history.size() - 1).equals(blob)) {
+                    history.add(blob);
+                }
+            }
+        }
+        return new ArrayList<List<String>>(histories.values());
+    }
+
+    /** Return the IDs of the commits that garbage collection treats as
+     * live: the heads of every branch. Everything else that is kept is
+     * kept because one of these reaches it. */
+    List<String> roots() {
+        return new ArrayList<String>(_branches.values());
+    }
+
+    /** Return the IDs of every object reachable from some commits: the
+     * commits themselves and all their ancestors, the trees of those
+     * commits and their subtrees, and the blobs in those trees. A tree
+     * that has been seen once is not read again, so the trees shared by
+     * many commits are only walked once.
+     * @param commits the IDs of the commits to start from.
+     * @return the IDs of every object they reach. */
+    HashSet<String> reachableFrom(Collection<String> commits) {
+        HashSet<String> reachable = new HashSet<String>();
+        ArrayDeque<String> commitQueue = new ArrayDeque<String>(commits);
+        ArrayDeque<String> treeQueue = new ArrayDeque<String>();
+        while (!commitQueue.isEmpty()) {
+            String id = commitQueue.pop();
+            if (!reachable.add(id)) {
+                continue;
+            }
+            Commit commit = Commit.fromID(id);
+            if (commit.parentID() != null) {
+                commitQueue.push(commit.parentID());
+            }
+            if (commit.mergeParentID() != null) {
+                commitQueue.push(commit.mergeParentID());
+            }
+            if (commit.treeID() != null) {
+                treeQueue.push(commit.treeID());
+            }
+        }
+        while (!treeQueue.isEmpty()) {
+            String id = treeQueue.pop();
+            if (!reachable.add(id)) {
+                continue;
+            }
+            Tree tree = Tree.fromID(id);
+            reachable.addAll(tree.blobs().values());
+            treeQueue.addAll(tree.trees().values());
+        }
+        return reachable;
+    }
+
+    /** Rewrites the ledger to list only the commits that are still in
+     * the archive, as they are after garbage collection. The new ledger
+     * is written beside the old one and renamed over it. */
+    void pruneLedger() {
+        StringBuilder kept = new StringBuilder();
+        for (String id: allIDs()) {
+            if (Archivist.has(id)) {
+                kept.append(id).append("\n");
+            }
+        }
+        File scratch = new File(LEDGER_FILE.getPath() + ".tmp");
+        Utils.writeContents(scratch, kept.toString());
         try {
-            thisCommittee.createNewFile();
-        } catch (IOException ex) {
-            System.out.println("Path leading to file is "
-                    + "imcomplete or malformed.");
+            Files.move(scratch.toPath(), LEDGER_FILE.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            throw Utils.error("Could not rewrite the ledger.");
         }
-        Utils.writeObject(thisCommittee, this);
+    }
+
+    /** Return the contents of a small text file, without trailing
+     * whitespace.
+     * @param file the file to be read. */
+    private static String readContentsOf(File file) {
+        return Utils.readContentsAsString(file).trim();
     }
 
     /** Return a List of my branches as string reprs of their names. */
@@ -502,12 +522,7 @@ public class Committee implements Serializable {
     /** Return the head of one of my branches.
      * @param branch the which points to the commit that is sought. */
     Commit headOf(String branch) {
-        return _branches.get(branch);
-    }
-
-    /** Return the head of my current branch. */
-    Commit branchHead() {
-        return _currBranch;
+        return Commit.fromID(_branches.get(branch));
     }
 
     /** Return the name of my current branch. */
@@ -518,22 +533,14 @@ public class Committee implements Serializable {
     /** The most recent commit of the current branch. */
     private Commit _head;
 
-    /** The commit which the current branch points to. */
-    private Commit _currBranch;
-
     /** The string name of the curren branch. */
     private String _currBranchName;
 
-    /** A mapping of branch names to branch heads. */
-    private HashMap<String, Commit> _branches
-            = new HashMap<String, Commit>();
-
-    /** A mapping of commit messages to commits. */
-    private HashMap<String, ArrayList<Commit>> _allCommits
-            = new HashMap<String, ArrayList<Commit>>();
+    /** The commit graph, or null until it is first needed. */
+    private CommitGraph _graph;
 
-    /** A mapping of commit IDs to commits. */
-    private HashMap<String, Commit> _allIDs
-            = new HashMap<String, Commit>();
+    /** A mapping of branch names to the IDs of branch heads. */
+    private HashMap<String, String> _branches
+            = new HashMap<String, String>();
 
 }
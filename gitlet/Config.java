@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static gitlet.Main.CONFIG_FILE;
+
+/** The settings of a repository, read from .gitlet/config. The file is
+ * optional and holds "key=value" lines in the format of
+ * java.util.Properties; any setting it does not give takes its default.
+ * @author Daniel Chung
+ */
+class Config {
+
+    /** Config is never instantiated; the settings live on disk. */
+    private Config() {
+    }
+
+    /** Return the setting KEY as a number.
+     * @param key the name of the setting.
+     * @param defaultValue the value used when the setting is not given.
+     * @return the value of the setting. */
+    static long getLong(String key, long defaultValue) {
+        String value = properties().getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Setting %s in .gitlet/config is not a number.",
+                    key);
+        }
+    }
+
+    /** Return the settings in the config file, which is read once. */
+    private static Properties properties() {
+        if (_properties == null) {
+            _properties = new Properties();
+            if (CONFIG_FILE.isFile()) {
+                try (InputStream in = Files.newInputStream(
+                        CONFIG_FILE.toPath())) {
+                    _properties.load(in);
+                } catch (IOException excp) {
+                    throw Utils.error("Could not read .gitlet/config.");
+                }
+            }
+        }
+        return _properties;
+    }
+
+    /** The settings in the config file, once it has been read. */
+    private static Properties _properties;
+
+}
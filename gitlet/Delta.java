@@ -0,0 +1,160 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+
+/** Delta compression between two versions of the same file. A delta
+ * describes a target version as a series of instructions that either
+ * copy a run of bytes out of a base version or insert new bytes, so
+ * storing a small edit costs about as much as the edit itself.
+ *
+ * A delta is encoded as the length of the base, the length of the
+ * target, and then its instructions. Each instruction begins with a
+ * varint holding its length shifted left by one, with a low bit of 1
+ * for a copy, which is followed by the varint offset of the run in the
+ * base, and 0 for an insert, which is followed by the inserted bytes.
+ * @author Daniel Chung
+ */
+class Delta {
+
+    /** Deltas are never instantiated. */
+    private Delta() {
+    }
+
+    /** Return a delta that rebuilds TARGET from BASE.
+     * @param base the version the delta is taken against.
+     * @param target the version the delta rebuilds.
+     * @return the encoded delta. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Utils.writeVarint(out, base.length);
+        Utils.writeVarint(out, target.length);
+
+        HashMap<Integer, Integer> blocks = new HashMap<Integer, Integer>();
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            blocks.putIfAbsent(hash(base, i), i);
+        }
+
+        int pending = 0;
+        int i = 0;
+        int h = i + BLOCK <= target.length ? hash(target, i) : 0;
+        while (i + BLOCK <= target.length) {
+            Integer start = blocks.get(h);
+            if (start != null && matches(base, start, target, i)) {
+                int from = start;
+                int len = BLOCK;
+                while (i + len < target.length && from + len < base.length
+                        && base[from + len] == target[i + len]) {
+                    len += 1;
+                }
+                while (i > pending && from > 0
+                        && base[from - 1] == target[i - 1]) {
+                    i -= 1;
+                    from -= 1;
+                    len += 1;
+                }
+                insert(out, target, pending, i);
+                Utils.writeVarint(out, ((long) len << 1) | 1);
+                Utils.writeVarint(out, from);
+                i += len;
+                pending = i;
+                if (i + BLOCK <= target.length) {
+                    h = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    h = (h - (target[i] & MASK) * POWER) * PRIME
+                            + (target[i + BLOCK] & MASK);
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Return the target version rebuilt by applying DELTA to BASE.
+     * @param base the version the delta was taken against.
+     * @param delta the encoded delta.
+     * @return the target version. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        ByteBuffer in = ByteBuffer.wrap(delta);
+        if (Utils.readVarint(in) != base.length) {
+            throw Utils.error("Delta does not apply to its base.");
+        }
+        byte[] target = new byte[(int) Utils.readVarint(in)];
+        int at = 0;
+        while (in.hasRemaining()) {
+            long op = Utils.readVarint(in);
+            int len = (int) (op >>> 1);
+            if ((op & 1) == 1) {
+                int from = (int) Utils.readVarint(in);
+                System.arraycopy(base, from, target, at, len);
+            } else {
+                in.get(target, at, len);
+            }
+            at += len;
+        }
+        if (at != target.length) {
+            throw Utils.error("Delta is corrupt.");
+        }
+        return target;
+    }
+
+    /** Writes an insert instruction for BYTES[FROM..TO), if that run is
+     * not empty.
+     * @param out the stream the delta is written to.
+     * @param bytes the target version.
+     * @param from the index of the first byte to insert.
+     * @param to the index just past the last byte to insert. */
+    private static void insert(ByteArrayOutputStream out, byte[] bytes,
+                               int from, int to) {
+        if (to > from) {
+            Utils.writeVarint(out, (long) (to - from) << 1);
+            out.write(bytes, from, to - from);
+        }
+    }
+
+    /** Return the rolling hash of the BLOCK bytes of BYTES at AT.
+     * @param bytes the bytes being hashed.
+     * @param at the index of the first byte of the block. */
+    private static int hash(byte[] bytes, int at) {
+        int h = 0;
+        for (int k = at; k < at + BLOCK; k += 1) {
+            h = h * PRIME + (bytes[k] & MASK);
+        }
+        return h;
+    }
+
+    /** Return whether the BLOCK bytes of BASE at FROM equal those of
+     * TARGET at AT.
+     * @param base the base version.
+     * @param from the start of the block in the base.
+     * @param target the target version.
+     * @param at the start of the block in the target. */
+    private static boolean matches(byte[] base, int from,
+                                   byte[] target, int at) {
+        for (int k = 0; k < BLOCK; k += 1) {
+            if (base[from + k] != target[at + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Length of the blocks of the base that are indexed for copying. */
+    private static final int BLOCK = 16;
+
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 31;
+
+    /** Mask taking a byte to its unsigned value. */
+    private static final int MASK = 0xff;
+
+    /** PRIME raised to the power BLOCK - 1, which is the weight of the
+     * byte leaving the rolling hash. */
+    private static final int POWER = hash(new byte[] {
+        1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, 0);
+
+}
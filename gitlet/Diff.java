@@ -0,0 +1,568 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/** Line-by-line differences between two versions of a file.
+ *
+ * The lines of both versions are first numbered, equal lines alike, so
+ * that the rest of the work compares ints. Lines the two versions begin
+ * and end with are set aside. What is left is split at the lines that
+ * occur exactly once in each version, in the longest run of them that
+ * appears in the same order in both (the patience heuristic), and each
+ * piece is handled the same way in turn. A piece with no such lines is
+ * left to the linear-space form of Myers' O(ND) algorithm, which finds a
+ * shortest edit script in time proportional to its size times the number
+ * of differences, and which settles for a good script rather than the
+ * best one past MAX_COST differences, as GNU diff does, so that no input
+ * takes quadratic time.
+ *
+ * Contents are treated as ISO-8859-1 text, which maps each byte to one
+ * char and back, so any file's bytes survive being split into lines and
+ * written out again.
+ * @author Daniel Chung
+ */
+class Diff {
+
+    /** Not to be instantiated. */
+    private Diff() {
+    }
+
+    /** Return the lines of CONTENTS, each with the newline that ends it;
+     * the last line has none if the contents do not end in a newline.
+     * @param contents the contents of a file. */
+    static List<String> lines(byte[] contents) {
+        String text = new String(contents, StandardCharsets.ISO_8859_1);
+        List<String> lines = new ArrayList<String>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end == -1 ? text.length() : end + 1;
+            lines.add(text.substring(start, end));
+            start = end;
+        }
+        return lines;
+    }
+
+    /** Return whether CONTENTS look like those of a binary file, which
+     * is taken to be so if a NUL byte occurs near the start, as git does.
+     * @param contents the contents of a file. */
+    static boolean isBinary(byte[] contents) {
+        int probe = Math.min(contents.length, BINARY_PROBE);
+        for (int i = 0; i < probe; i += 1) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return the edits that turn the lines A into the lines B, in
+     * order, none of them adjacent to another.
+     * @param a the lines of the old version.
+     * @param b the lines of the new version. */
+    static List<Edit> edits(List<String> a, List<String> b) {
+        HashMap<String, Integer> codes = new HashMap<String, Integer>();
+        int[] x = new int[a.size()];
+        int[] y = new int[b.size()];
+        for (int i = 0; i < x.length; i += 1) {
+            x[i] = codes.computeIfAbsent(a.get(i), k -> codes.size());
+        }
+        for (int j = 0; j < y.length; j += 1) {
+            y[j] = codes.computeIfAbsent(b.get(j), k -> codes.size());
+        }
+        Engine engine = new Engine(x, y);
+        engine.diff(0, x.length, 0, y.length);
+        return engine._edits;
+    }
+
+    /** Writes the differences between two versions of a file to OUT in
+     * the unified format, as a header naming the file and then hunks of
+     * the edits with CONTEXT unchanged lines around each. Each hunk is
+     * written as soon as it is known. A version that is null is missing,
+     * and is shown as /dev/null.
+     * @param out where the differences are written.
+     * @param path the path of the file.
+     * @param before the contents of the old version, or null.
+     * @param after the contents of the new version, or null. */
+    static void writeUnified(OutputStream out, String path, byte[] before,
+                             byte[] after) throws IOException {
+        write(out, "diff a/" + path + " b/" + path + "\n");
+        if ((before != null && isBinary(before))
+                || (after != null && isBinary(after))) {
+            write(out, "Binary files " + (before == null ? NULL : "a/" + path)
+                    + " and " + (after == null ? NULL : "b/" + path)
+                    + " differ\n");
+            return;
+        }
+        write(out, "--- " + (before == null ? NULL : "a/" + path) + "\n");
+        write(out, "+++ " + (after == null ? NULL : "b/" + path) + "\n");
+        List<String> a = lines(before == null ? new byte[0] : before);
+        List<String> b = lines(after == null ? new byte[0] : after);
+        List<Edit> edits = edits(a, b);
+
+        int first = 0;
+        while (first < edits.size()) {
+            int last = first;
+            while (last + 1 < edits.size() && edits.get(last + 1).aStart()
+                    - edits.get(last).aEnd() <= 2 * CONTEXT) {
+                last += 1;
+            }
+            writeHunk(out, a, b, edits.subList(first, last + 1));
+            first = last + 1;
+        }
+    }
+
+    /** Writes one hunk of the unified format, covering EDITS and the
+     * unchanged lines around and between them.
+     * @param out where the hunk is written.
+     * @param a the lines of the old version.
+     * @param b the lines of the new version.
+     * @param edits the edits in the hunk, in order. */
+    private static void writeHunk(OutputStream out, List<String> a,
+                                  List<String> b, List<Edit> edits)
+            throws IOException {
+        Edit head = edits.get(0);
+        Edit tail = edits.get(edits.size() - 1);
+        int aStart = Math.max(0, head.aStart() - CONTEXT);
+        int bStart = head.bStart() - (head.aStart() - aStart);
+        int aEnd = Math.min(a.size(), tail.aEnd() + CONTEXT);
+        int bEnd = tail.bEnd() + (aEnd - tail.aEnd());
+        write(out, "@@ -" + range(aStart, aEnd) + " +" + range(bStart, bEnd)
+                + " @@\n");
+
+        int i = aStart;
+        for (Edit edit: edits) {
+            for (; i < edit.aStart(); i += 1) {
+                writeLine(out, ' ', a.get(i));
+            }
+            for (; i < edit.aEnd(); i += 1) {
+                writeLine(out, '-', a.get(i));
+            }
+            for (int j = edit.bStart(); j < edit.bEnd(); j += 1) {
+                writeLine(out, '+', b.get(j));
+            }
+        }
+        for (; i < aEnd; i += 1) {
+            writeLine(out, ' ', a.get(i));
+        }
+    }
+
+    /** Return the range of lines from START to END, exclusive, as a
+     * hunk header gives it: the first line counting from 1, or the line
+     * before an empty range, and the number of lines unless it is 1.
+     * @param start the index of the first line.
+     * @param end the index past the last line. */
+    private static String range(int start, int end) {
+        if (end - start == 1) {
+            return Integer.toString(start + 1);
+        }
+        return (end == start ? start : start + 1) + "," + (end - start);
+    }
+
+    /** Writes LINE with the mark MARK in front of it, noting if it does
+     * not end in a newline.
+     * @param out where the line is written.
+     * @param mark ' ', '-' or '+'.
+     * @param line the line, with its newline if it has one. */
+    private static void writeLine(OutputStream out, char mark, String line)
+            throws IOException {
+        out.write(mark);
+        write(out, line);
+        if (!line.endsWith("\n")) {
+            write(out, "\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** Writes TEXT to OUT, a byte for each char.
+     * @param out where the text is written.
+     * @param text the text. */
+    static void write(OutputStream out, String text)
+            throws IOException {
+        out.write(text.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /** The replacement of the lines of the old version from aStart up to
+     * aEnd with those of the new version from bStart up to bEnd. One of
+     * the two ranges may be empty. */
+    static class Edit {
+
+        /** An edit replacing lines A_START to A_END of the old version
+         * with lines B_START to B_END of the new.
+         * @param aStart the first line replaced.
+         * @param aEnd the line past the last line replaced.
+         * @param bStart the first line put in its place.
+         * @param bEnd the line past the last line put in its place. */
+        Edit(int aStart, int aEnd, int bStart, int bEnd) {
+            _aStart = aStart;
+            _aEnd = aEnd;
+            _bStart = bStart;
+            _bEnd = bEnd;
+        }
+
+        /** Return the first line of the old version replaced. */
+        int aStart() {
+            return _aStart;
+        }
+
+        /** Return the line of the old version past the last replaced. */
+        int aEnd() {
+            return _aEnd;
+        }
+
+        /** Return the first line of the new version put in place. */
+        int bStart() {
+            return _bStart;
+        }
+
+        /** Return the line of the new version past the last put in
+         * place. */
+        int bEnd() {
+            return _bEnd;
+        }
+
+        /** The first line of the old version replaced. */
+        private int _aStart;
+
+        /** The line of the old version past the last replaced. */
+        private int _aEnd;
+
+        /** The first line of the new version put in place. */
+        private int _bStart;
+
+        /** The line of the new version past the last put in place. */
+        private int _bEnd;
+    }
+
+    /** The state of one diff: the numbered lines of both versions and
+     * the edits found so far. */
+    private static class Engine {
+
+        /** A diff of the numbered lines X and Y.
+         * @param x the old version's lines, as numbers.
+         * @param y the new version's lines, as numbers. */
+        Engine(int[] x, int[] y) {
+            _x = x;
+            _y = y;
+        }
+
+        /** Finds the edits turning lines A_LO to A_HI of the old version
+         * into lines B_LO to B_HI of the new, and adds them in order.
+         * @param aLo the first line of the old piece.
+         * @param aHi the line past the old piece.
+         * @param bLo the first line of the new piece.
+         * @param bHi the line past the new piece. */
+        void diff(int aLo, int aHi, int bLo, int bHi) {
+            while (aLo < aHi && bLo < bHi && _x[aLo] == _y[bLo]) {
+                aLo += 1;
+                bLo += 1;
+            }
+            while (aLo < aHi && bLo < bHi && _x[aHi - 1] == _y[bHi - 1]) {
+                aHi -= 1;
+                bHi -= 1;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                add(aLo, aHi, bLo, bHi);
+                return;
+            }
+
+            int[][] anchors = anchors(aLo, aHi, bLo, bHi);
+            if (anchors[0].length == 0) {
+                myers(aLo, aHi, bLo, bHi);
+                return;
+            }
+            int i = aLo;
+            int j = bLo;
+            for (int k = 0; k < anchors[0].length; k += 1) {
+                diff(i, anchors[0][k], j, anchors[1][k]);
+                i = anchors[0][k] + 1;
+                j = anchors[1][k] + 1;
+            }
+            diff(i, aHi, j, bHi);
+        }
+
+        /** Return the positions in the old and new pieces of the lines
+         * that occur once in each, in the longest run of them found in
+         * the same order in both, as two arrays.
+         * @param aLo the first line of the old piece.
+         * @param aHi the line past the old piece.
+         * @param bLo the first line of the new piece.
+         * @param bHi the line past the new piece. */
+        private int[][] anchors(int aLo, int aHi, int bLo, int bHi) {
+            HashMap<Integer, int[]> seen = new HashMap<Integer, int[]>();
+            for (int i = aLo; i < aHi; i += 1) {
+                int[] count = seen.computeIfAbsent(_x[i],
+                        k -> new int[] {0, 0, 0});
+                count[0] += 1;
+                count[1] = i;
+            }
+            for (int j = bLo; j < bHi; j += 1) {
+                int[] count = seen.get(_y[j]);
+                if (count != null) {
+                    count[2] = count[2] == 0 ? j + 1 : -1;
+                }
+            }
+            int[] partner = new int[aHi - aLo];
+            Arrays.fill(partner, -1);
+            for (int[] count: seen.values()) {
+                if (count[0] == 1 && count[2] > 0) {
+                    partner[count[1] - aLo] = count[2] - 1;
+                }
+            }
+
+            int[] tails = new int[aHi - aLo];
+            int[] back = new int[aHi - aLo];
+            int length = 0;
+            for (int i = 0; i < partner.length; i += 1) {
+                if (partner[i] == -1) {
+                    continue;
+                }
+                int lo = 0;
+                int hi = length;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (partner[tails[mid]] < partner[i]) {
+                        lo = mid + 1;
+                    } else {
+                        hi = mid;
+                    }
+                }
+                back[i] = lo == 0 ? -1 : tails[lo - 1];
+                tails[lo] = i;
+                length = Math.max(length, lo + 1);
+            }
+
+            int[][] anchors = new int[2][length];
+            int i = length == 0 ? -1 : tails[length - 1];
+            for (int k = length - 1; k >= 0; k -= 1) {
+                anchors[0][k] = aLo + i;
+                anchors[1][k] = partner[i];
+                i = back[i];
+            }
+            return anchors;
+        }
+
+        /** Finds the edits for a piece by the linear-space form of
+         * Myers' algorithm: the piece is split where a shortest edit
+         * script crosses its middle, found by searching forwards from its
+         * start and backwards from its end at once, and each half is
+         * handled in turn. Past MAX_COST differences the search stops
+         * and splits the piece at the furthest point either direction
+         * has reached instead, so the script may no longer be the
+         * shortest but the time taken stays near linear.
+         * @param aLo the first line of the old piece.
+         * @param aHi the line past the old piece.
+         * @param bLo the first line of the new piece.
+         * @param bHi the line past the new piece. */
+        private void myers(int aLo, int aHi, int bLo, int bHi) {
+            while (true) {
+                while (aLo < aHi && bLo < bHi && _x[aLo] == _y[bLo]) {
+                    aLo += 1;
+                    bLo += 1;
+                }
+                while (aLo < aHi && bLo < bHi
+                        && _x[aHi - 1] == _y[bHi - 1]) {
+                    aHi -= 1;
+                    bHi -= 1;
+                }
+                if (aLo == aHi || bLo == bHi) {
+                    add(aLo, aHi, bLo, bHi);
+                    return;
+                }
+                int aMid = split(aLo, aHi, bLo, bHi);
+                int bMid = aMid - _diagonal;
+                myers(aLo, aMid, bLo, bMid);
+                aLo = aMid;
+                bLo = bMid;
+            }
+        }
+
+        /** Return the line of the old version at which a piece is split,
+         * leaving in _diagonal the diagonal, old line less new line, of
+         * the point of the split. The first and last lines of the two
+         * sides of the piece must differ.
+         * @param aLo the first line of the old piece.
+         * @param aHi the line past the old piece.
+         * @param bLo the first line of the new piece.
+         * @param bHi the line past the new piece. */
+        private int split(int aLo, int aHi, int bLo, int bHi) {
+            if (_forward == null) {
+                _forward = new int[_x.length + _y.length + 3];
+                _backward = new int[_x.length + _y.length + 3];
+            }
+            int[] fd = _forward;
+            int[] bd = _backward;
+            int off = _y.length + 1;
+            int dMin = aLo - bHi;
+            int dMax = aHi - bLo;
+            int fMid = aLo - bLo;
+            int bMid = aHi - bHi;
+            int fMin = fMid;
+            int fMax = fMid;
+            int bMin = bMid;
+            int bMax = bMid;
+            boolean odd = ((fMid - bMid) & 1) != 0;
+            fd[off + fMid] = aLo;
+            bd[off + bMid] = aHi;
+
+            for (int cost = 1;; cost += 1) {
+                if (fMin > dMin) {
+                    fMin -= 1;
+                    fd[off + fMin - 1] = -1;
+                } else {
+                    fMin += 1;
+                }
+                if (fMax < dMax) {
+                    fMax += 1;
+                    fd[off + fMax + 1] = -1;
+                } else {
+                    fMax -= 1;
+                }
+                for (int d = fMax; d >= fMin; d -= 2) {
+                    int lo = fd[off + d - 1];
+                    int hi = fd[off + d + 1];
+                    int x = lo >= hi ? lo + 1 : hi;
+                    int y = x - d;
+                    while (x < aHi && y < bHi && _x[x] == _y[y]) {
+                        x += 1;
+                        y += 1;
+                    }
+                    fd[off + d] = x;
+                    if (odd && bMin <= d && d <= bMax && bd[off + d] <= x) {
+                        _diagonal = d;
+                        return x;
+                    }
+                }
+
+                if (bMin > dMin) {
+                    bMin -= 1;
+                    bd[off + bMin - 1] = Integer.MAX_VALUE;
+                } else {
+                    bMin += 1;
+                }
+                if (bMax < dMax) {
+                    bMax += 1;
+                    bd[off + bMax + 1] = Integer.MAX_VALUE;
+                } else {
+                    bMax -= 1;
+                }
+                for (int d = bMax; d >= bMin; d -= 2) {
+                    int lo = bd[off + d - 1];
+                    int hi = bd[off + d + 1];
+                    int x = lo < hi ? lo : hi - 1;
+                    int y = x - d;
+                    while (aLo < x && bLo < y && _x[x - 1] == _y[y - 1]) {
+                        x -= 1;
+                        y -= 1;
+                    }
+                    bd[off + d] = x;
+                    if (!odd && fMin <= d && d <= fMax && x <= fd[off + d]) {
+                        _diagonal = d;
+                        return x;
+                    }
+                }
+
+                if (cost >= MAX_COST) {
+                    int fBest = -1;
+                    int fBestX = 0;
+                    int fBestD = 0;
+                    for (int d = fMax; d >= fMin; d -= 2) {
+                        int x = Math.min(fd[off + d], aHi);
+                        int y = x - d;
+                        if (y > bHi) {
+                            x = bHi + d;
+                            y = bHi;
+                        }
+                        if (x + y > fBest) {
+                            fBest = x + y;
+                            fBestX = x;
+                            fBestD = d;
+                        }
+                    }
+                    int bBest = Integer.MAX_VALUE;
+                    int bBestX = 0;
+                    int bBestD = 0;
+                    for (int d = bMax; d >= bMin; d -= 2) {
+                        int x = Math.max(aLo, bd[off + d]);
+                        int y = x - d;
+                        if (y < bLo) {
+                            x = bLo + d;
+                            y = bLo;
+                        }
+                        if (x + y < bBest) {
+                            bBest = x + y;
+                            bBestX = x;
+                            bBestD = d;
+                        }
+                    }
+                    if ((aHi + bHi) - bBest < fBest - (aLo + bLo)) {
+                        _diagonal = fBestD;
+                        return fBestX;
+                    }
+                    _diagonal = bBestD;
+                    return bBestX;
+                }
+            }
+        }
+
+        /** Adds an edit, joining it to the last if they touch, and
+         * ignoring it if it changes nothing.
+         * @param aLo the first line replaced.
+         * @param aHi the line past the last replaced.
+         * @param bLo the first line put in its place.
+         * @param bHi the line past the last put in its place. */
+        private void add(int aLo, int aHi, int bLo, int bHi) {
+            if (aLo == aHi && bLo == bHi) {
+                return;
+            }
+            if (!_edits.isEmpty()) {
+                Edit last = _edits.get(_edits.size() - 1);
+                if (last._aEnd == aLo && last._bEnd == bLo) {
+                    last._aEnd = aHi;
+                    last._bEnd = bHi;
+                    return;
+                }
+            }
+            _edits.add(new Edit(aLo, aHi, bLo, bHi));
+        }
+
+        /** The old version's lines, as numbers. */
+        private final int[] _x;
+
+        /** The new version's lines, as numbers. */
+        private final int[] _y;
+
+        /** The edits found so far, in order. */
+        private final List<Edit> _edits = new ArrayList<Edit>();
+
+        /** The furthest line of the old version reached on each diagonal
+         * by the forward search of split, once it has been needed. */
+        private int[] _forward;
+
+        /** The same for the backward search. */
+        private int[] _backward;
+
+        /** The diagonal of the point at which split last split. */
+        private int _diagonal;
+    }
+
+    /** How many bytes at the start of a file are searched for a NUL. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** How many unchanged lines are shown around each edit. */
+    static final int CONTEXT = 3;
+
+    /** How many differences Myers' algorithm looks for in one piece
+     * before it settles for splitting the piece where its search has got
+     * furthest. */
+    private static final int MAX_COST = 256;
+
+    /** How a missing version is named. */
+    private static final String NULL = "/dev/null";
+
+}
@@ -0,0 +1,185 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/** A three-way merge of the lines of two versions of a file, ours and
+ * theirs, that both descend from a common base.
+ *
+ * Each version is diffed against the base, which gives two lists of
+ * edits in the base's lines. Walking them together in order, an edit
+ * that no edit of the other side touches is taken as it is, and edits
+ * of the two sides that overlap or touch are gathered into one region.
+ * If both sides made the same change to a region it is taken once;
+ * otherwise both sides' versions of just that region are written between
+ * conflict markers, and the lines around it are merged as usual. A file
+ * missing from either side, or that is binary, cannot be merged by line,
+ * so both versions are written whole between the markers. The merged
+ * lines are written out as they are decided.
+ * @author Daniel Chung
+ */
+class Diff3 {
+
+    /** Not to be instantiated. */
+    private Diff3() {
+    }
+
+    /** Writes the merge of OURS and THEIRS, whose common base is BASE, to
+     * OUT. Any of the three is null if the file is missing there. Return
+     * whether any region conflicts.
+     * @param out where the merged file is written.
+     * @param base the contents of the base version, or null.
+     * @param ours the contents of our version, or null.
+     * @param theirs the contents of their version, or null. */
+    static boolean merge(OutputStream out, byte[] base, byte[] ours,
+                         byte[] theirs) throws IOException {
+        if (ours == null || theirs == null || Diff.isBinary(ours)
+                || Diff.isBinary(theirs)
+                || (base != null && Diff.isBinary(base))) {
+            Diff.write(out, OURS_MARKER);
+            if (ours != null) {
+                out.write(ours);
+                endLine(out, ours.length == 0
+                        || ours[ours.length - 1] == '\n');
+            }
+            Diff.write(out, SEPARATOR);
+            if (theirs != null) {
+                out.write(theirs);
+                endLine(out, theirs.length == 0
+                        || theirs[theirs.length - 1] == '\n');
+            }
+            Diff.write(out, THEIRS_MARKER);
+            return true;
+        }
+
+        List<String> o = Diff.lines(base == null ? new byte[0] : base);
+        List<String> a = Diff.lines(ours);
+        List<String> b = Diff.lines(theirs);
+        List<Diff.Edit> ourEdits = Diff.edits(o, a);
+        List<Diff.Edit> theirEdits = Diff.edits(o, b);
+
+        boolean conflicted = false;
+        int done = 0;
+        int i = 0;
+        int j = 0;
+        while (i < ourEdits.size() || j < theirEdits.size()) {
+            int firstOurs = i;
+            int firstTheirs = j;
+            int lo;
+            int hi;
+            if (j == theirEdits.size() || (i < ourEdits.size()
+                    && ourEdits.get(i).aStart()
+                    <= theirEdits.get(j).aStart())) {
+                lo = ourEdits.get(i).aStart();
+                hi = ourEdits.get(i).aEnd();
+                i += 1;
+            } else {
+                lo = theirEdits.get(j).aStart();
+                hi = theirEdits.get(j).aEnd();
+                j += 1;
+            }
+            while (true) {
+                if (i < ourEdits.size() && ourEdits.get(i).aStart() <= hi) {
+                    hi = Math.max(hi, ourEdits.get(i).aEnd());
+                    i += 1;
+                } else if (j < theirEdits.size()
+                        && theirEdits.get(j).aStart() <= hi) {
+                    hi = Math.max(hi, theirEdits.get(j).aEnd());
+                    j += 1;
+                } else {
+                    break;
+                }
+            }
+
+            writeLines(out, o, done, lo);
+            done = hi;
+            if (j == firstTheirs) {
+                writeLines(out, a, ourEdits.get(firstOurs).bStart(),
+                        ourEdits.get(i - 1).bEnd());
+            } else if (i == firstOurs) {
+                writeLines(out, b, theirEdits.get(firstTheirs).bStart(),
+                        theirEdits.get(j - 1).bEnd());
+            } else {
+                List<String> ourRegion = region(a, ourEdits, firstOurs, i,
+                        lo, hi);
+                List<String> theirRegion = region(b, theirEdits, firstTheirs,
+                        j, lo, hi);
+                if (ourRegion.equals(theirRegion)) {
+                    writeLines(out, ourRegion, 0, ourRegion.size());
+                } else {
+                    conflicted = true;
+                    Diff.write(out, OURS_MARKER);
+                    writeSide(out, ourRegion);
+                    Diff.write(out, SEPARATOR);
+                    writeSide(out, theirRegion);
+                    Diff.write(out, THEIRS_MARKER);
+                }
+            }
+        }
+        writeLines(out, o, done, o.size());
+        return conflicted;
+    }
+
+    /** Return the lines of a version that stand in for the lines LO up
+     * to HI of the base, which cover the edits FIRST up to LAST of EDITS
+     * and unchanged lines on either side of them.
+     * @param lines the lines of the version.
+     * @param edits the edits from the base to the version.
+     * @param first the first edit in the region.
+     * @param last the edit past the last in the region.
+     * @param lo the first line of the base in the region.
+     * @param hi the line of the base past the region. */
+    private static List<String> region(List<String> lines,
+                                       List<Diff.Edit> edits, int first,
+                                       int last, int lo, int hi) {
+        Diff.Edit head = edits.get(first);
+        Diff.Edit tail = edits.get(last - 1);
+        return lines.subList(head.bStart() - (head.aStart() - lo),
+                tail.bEnd() + (hi - tail.aEnd()));
+    }
+
+    /** Writes LINES, one side of a conflict, to OUT, ending the last
+     * with a newline if it has none so that the marker after it starts
+     * a line of its own.
+     * @param out where the lines are written.
+     * @param lines the lines, each with its newline if it has one. */
+    private static void writeSide(OutputStream out, List<String> lines)
+            throws IOException {
+        writeLines(out, lines, 0, lines.size());
+        endLine(out, lines.isEmpty()
+                || lines.get(lines.size() - 1).endsWith("\n"));
+    }
+
+    /** Writes a newline to OUT unless what was last written is ENDED.
+     * @param out where the newline is written.
+     * @param ended whether what was last written ends a line. */
+    private static void endLine(OutputStream out, boolean ended)
+            throws IOException {
+        if (!ended) {
+            out.write('\n');
+        }
+    }
+
+    /** Writes LINES from START up to END to OUT.
+     * @param out where the lines are written.
+     * @param lines the lines, each with its newline if it has one.
+     * @param start the first line written.
+     * @param end the line past the last written. */
+    private static void writeLines(OutputStream out, List<String> lines,
+                                   int start, int end) throws IOException {
+        for (int k = start; k < end; k += 1) {
+            Diff.write(out, lines.get(k));
+        }
+    }
+
+    /** The line before our side of a conflict. */
+    private static final String OURS_MARKER = "<<<<<<< HEAD\n";
+
+    /** The line between the two sides of a conflict. */
+    private static final String SEPARATOR = "=======\n";
+
+    /** The line after their side of a conflict. */
+    private static final String THEIRS_MARKER = ">>>>>>>\n";
+
+}
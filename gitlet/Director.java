@@ -1,31 +1,27 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static gitlet.Main.GITLET_FOLDER;
-import static gitlet.Main.FILES_FOLDER;
-import static gitlet.Main.TEMP_FOLDER;
-import static gitlet.Main.STAGEADD_FOLDER;
-import static gitlet.Main.STAGEREM_FOLDER;
+import static gitlet.Main.LINK_FOLDER;
 import static gitlet.Main.COMMITS_FOLDER;
-import static gitlet.Main.BLOBS_FOLDER;
+import static gitlet.Main.OBJECTS_FOLDER;
+import static gitlet.Main.REFS_FOLDER;
 import static gitlet.Main.CWD_PATH;
-import static gitlet.Main.CWD;
-import static gitlet.Utils.plainFilenamesIn;
 import static gitlet.Utils.reactivate;
-import static gitlet.Utils.moveFile;
-import static gitlet.Utils.clearStage;
-import static gitlet.Utils.clearStageOf;
-import static gitlet.Utils.restrictedDelete;
-import static gitlet.Utils.readContents;
-import static gitlet.Utils.surgicalDelete;
+import static gitlet.Utils.deleteWorking;
 import static gitlet.Utils.join;
-import static gitlet.Utils.writeContents;
-import static gitlet.Utils.readContentsAsString;
 
 /** Controller class with authority over the .gitlet and working
  * directories.
@@ -49,8 +45,8 @@ public class Director {
     public void process(String[] args) {
         String command = args[0];
         if (!command.equals("init")) {
-            _committee = Committee.fromFile(
-                    new File(".gitlet/commits/committee"));
+            _committee = Committee.load();
+            _index = Index.read();
         }
         switch (command) {
         case "init":
@@ -80,6 +76,15 @@ public class Director {
         case "merge":
             preMerge(args);
             break;
+        case "repack":
+            preRepack(args);
+            break;
+        case "gc":
+            preGc(args);
+            break;
+        case "monitor":
+            preMonitor(args);
+            break;
         default:
             System.out.println("No command with that name exists.");
             break;
@@ -184,21 +189,50 @@ public class Director {
         }
     }
 
+    /** Sanitize input for repack command.
+     * @param args the command to be evaluated. */
+    private void preRepack(String...args) {
+        if (args.length == 1) {
+            repack();
+        } else {
+            System.out.println("Incorrect operands");
+        }
+    }
+
+    /** Sanitize input for gc command.
+     * @param args the command to be evaluated. */
+    private void preGc(String...args) {
+        if (args.length == 1) {
+            gc();
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
+    /** Sanitize input for monitor command.
+     * @param args the command to be evaluated. */
+    private void preMonitor(String...args) {
+        if (args.length == 1) {
+            Monitor.run();
+        } else {
+            System.out.println("Incorrect operands.");
+        }
+    }
+
     /**
      * Does required filesystem operations to allow for persistence.
      * Creates any necessary folders or files in this structure:
      *
      * .gitet/ -- top level folder for all persistent data
-     *    - files/    -- folder containing all of the persistent data
-     *                   for added and committed files.
-     *    - stageAdd/ -- folder containing all of the persistent data
-     *                   for files staged for addition.
-     *    - stageRem/ -- folder containing all of the persistent data
-     *                   for files staged for removal.
-     *    - commits/  -- folder containing all of the persistent data
-     *                   for commits.
-     *    - blobs/    -- folder containing all of the persistent data
-     *                   for blobs.
+     *    - commits/  -- folder containing the ledger of all commits.
+     *    - objects/  -- the object archive, containing the contents of
+     *                   every committed file version and every commit,
+     *                   filed by SHA1 ID.
+     *    - refs/     -- folder containing one file per branch, naming
+     *                   the ID of its head commit.
+     *    - HEAD      -- file naming the current branch.
+     *    - index     -- the staging area: every file the next commit
+     *                   will track, with the ID of its staged blob.
      */
     private void init() {
         if (_gitletPresent) {
@@ -208,124 +242,74 @@ public class Director {
 
         GITLET_FOLDER.mkdir();
 
-        Utils.join(GITLET_FOLDER, ".gitlet/files/");
-        FILES_FOLDER.mkdir();
-
-        Utils.join(GITLET_FOLDER, ".gitlet/temp/");
-        TEMP_FOLDER.mkdir();
-
-        Utils.join(GITLET_FOLDER, ".gitlet/stageAdd/");
-        STAGEADD_FOLDER.mkdir();
-
-        Utils.join(GITLET_FOLDER, ".gitlet/stageRem/");
-        STAGEREM_FOLDER.mkdir();
-
         Utils.join(GITLET_FOLDER, ".gitlet/commits/");
         COMMITS_FOLDER.mkdir();
 
-        Utils.join(GITLET_FOLDER, ".gitlet/blobs/");
-        BLOBS_FOLDER.mkdir();
+        Utils.join(GITLET_FOLDER, ".gitlet/objects/");
+        OBJECTS_FOLDER.mkdir();
+
+        Utils.join(GITLET_FOLDER, ".gitlet/refs/");
+        REFS_FOLDER.mkdir();
 
         _committee = new Committee();
-        _committee.save();
+        _index = new Index();
+        _index.write();
         _gitletPresent = true;
     }
 
-    /** Copies a file with name fileName from the working directory
-     * to the stage-add directory, which stages it for addition.
-     * @param fileName the name of the file to be moved. */
+    /** Stages the current version of a file in the working directory,
+     * archiving its contents once, now. Staging a file that matches the
+     * head commit's version leaves nothing staged for it, and adding a
+     * file that is staged for removal but no longer in the working
+     * directory unstages the removal. Naming a directory stages every
+     * file under it that is not ignored, and "." stages the whole working
+     * directory.
+     * @param fileName the name of the file to be staged. */
     private void add(String fileName) {
         File cwdFile = new File(CWD_PATH + fileName);
-        File addFile = new File(".gitlet/stageAdd/" + fileName);
-        File remFile = new File(".gitlet/stageRem/" + fileName);
-        if (!cwdFile.exists() && !addFile.exists() && !remFile.exists()) {
+        String headID = _committee.head().blobs().get(fileName);
+        if (cwdFile.isDirectory()) {
+            for (WorkingTree.Item item: WorkingTree.walk(fileName)) {
+                _index.add(item.path());
+            }
+        } else if (cwdFile.isFile()) {
+            _index.add(fileName);
+        } else if (headID != null && !_index.contains(fileName)) {
+            _index.put(fileName, headID);
+        } else {
             System.out.println("File does not exist.");
             return;
         }
-
-        List<String> toRemove = plainFilenamesIn(".gitlet/stageRem/");
-        if (toRemove.contains(fileName)) {
-            File currFile = new File(".gitlet/files/" + fileName);
-            byte[] currBytes = readContents(currFile);
-            byte[] remBytes = readContents(remFile);
-
-            if (!Arrays.equals(remBytes, currBytes)) {
-                moveFile(".gitlet/stageRem/",
-                        ".gitlet/stageAdd/", STAGEADD_FOLDER, fileName);
-            }
-            surgicalDelete(".gitlet/stageRem/", fileName);
-        }
-
-        byte[] newBytes = readContents(cwdFile);
-        if (_committee.hasFile(fileName)) {
-            File currFile = new File(".gitlet/files/" + fileName);
-            byte[] currBytes = readContents(currFile);
-            if (Arrays.equals(newBytes, currBytes)) {
-                return;
-            }
-        }
-
-        moveFile(CWD_PATH, ".gitlet/stageAdd/", STAGEADD_FOLDER, fileName);
+        _index.write();
     }
 
-    /** Creates a new commit, which tracks any files previously in the staging
-     * area and removes all files from the staging area following
-     * initialization. Data about the new commit is recorded in the
-     * committee'shashmaps.
+    /** Creates a new commit, which tracks the files in the index. The
+     * blobs of the staged files were archived when they were added, so
+     * nothing is copied; afterwards the index matches the new head, so
+     * nothing is staged.
      * @param message the string message to be associated with this commit. */
     private void commit(String message) {
-
-        List<String> trackableNames = plainFilenamesIn(".gitlet/stageAdd/");
-        List<String> toRemove = plainFilenamesIn(".gitlet/stageRem/");
-
-        if ((trackableNames == null || trackableNames.size() == 0)
-                && (toRemove == null || toRemove.size() == 0)) {
+        Commit head = _committee.head();
+        Map<String, String> additions = _index.additions(head);
+        Collection<String> removals = _index.removals(head).keySet();
+        if (additions.isEmpty() && removals.isEmpty()) {
             System.out.println("No changes added to the commit.");
             return;
         }
-
-        HashMap<String, File> commitFiles = new HashMap<String, File>();
-        HashMap<String, Blob> commitBlobs = new HashMap<String, Blob>();
-        for (String name: trackableNames) {
-            File asFile = new File(name);
-            Blob asBlob = new Blob(asFile);
-            commitFiles.put(name, asFile);
-            commitBlobs.put(name, asBlob);
-            moveFile(".gitlet/stageAdd/",
-                    ".gitlet/files/", FILES_FOLDER, name);
-        }
-
-        _committee.makeCommit(commitFiles, commitBlobs, message, toRemove);
-        _committee.save();
-        clearStage();
+        _committee.makeCommit(additions, message, removals);
     }
 
-    /** Creates a new merge commit, which tracks any files previously in the
-     * staging area and removes all files from the staging area following
-     * initialization. Data about the new commit is recorded in the committee's
-     * hashmaps. Also, poly whorf schism.
+    /** Creates a new merge commit, which tracks the files in the index.
+     * Data about the new commit is recorded in the committee. Also, poly
+     * whorf schism.
      * @param message the string message to be associated with this commit.
      * @param currID the ID of the head of the current branch,
      * @param givenID the ID of the head of the branch which merged into the
      *                current branch to create this commit. */
     private void commit(String message, String currID, String givenID) {
-        List<String> trackableNames = plainFilenamesIn(".gitlet/stageAdd/");
-        List<String> toRemove = plainFilenamesIn(".gitlet/stageRem/");
-
-        HashMap<String, File> commitFiles = new HashMap<String, File>();
-        HashMap<String, Blob> commitBlobs = new HashMap<String, Blob>();
-        for (String name: trackableNames) {
-            File asFile = new File(name);
-            Blob asBlob = new Blob(asFile);
-            commitFiles.put(name, asFile);
-            commitBlobs.put(name, asBlob);
-            moveFile(".gitlet/stageAdd/",
-                    ".gitlet/files/", FILES_FOLDER, name);
-        }
-        _committee.makeMergeCommit(commitFiles, commitBlobs, message,
-                toRemove, currID, givenID);
-        _committee.save();
-        clearStage();
+        Commit head = _committee.head();
+        _committee.makeMergeCommit(_index.additions(head), message,
+                _index.removals(head).keySet(), currID, givenID);
     }
 
     /** Unstage the file if it is currently staged for addition. If the
@@ -335,29 +319,18 @@ public class Director {
      * current commit).
      * @param fileName the name of the file to remove. */
     private void remove(String fileName) {
-        List<String> stagedFiles = plainFilenamesIn(".gitlet/stageAdd/");
-        if (stagedFiles.contains(fileName)) {
-            clearStageOf(fileName);
-        }
-
-        List<String> trackedFiles = _committee.trackedFiles();
-        if (trackedFiles.contains(fileName)) {
-
-            moveFile(".gitlet/files/",
-                    ".gitlet/stageRem/", STAGEREM_FOLDER, fileName);
-
-            List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-            if (workingFiles.contains(fileName)) {
-                File deleteMe = new File(CWD_PATH + fileName);
-                restrictedDelete(deleteMe);
-            }
-        }
-
-        if (!stagedFiles.contains(fileName)
-                && !trackedFiles.contains(fileName)) {
+        String headID = _committee.head().blobs().get(fileName);
+        Index.Entry entry = _index.get(fileName);
+        boolean staged = entry != null && !entry.id().equals(headID);
+        if (!staged && headID == null) {
             System.out.println("No reason to remove the file.");
+            return;
         }
-
+        _index.remove(fileName);
+        if (headID != null) {
+            deleteWorking(fileName);
+        }
+        _index.write();
     }
 
     /** Takes the version of the file as it exists in the head commit,
@@ -366,8 +339,10 @@ public class Director {
      * is one. The new version of the file is not staged.
      * @param fileName the name of the file to be checked out. */
     private void checkoutName(String fileName) {
-        _committee.findFile(fileName);
-        moveFile(".gitlet/files", CWD_PATH, CWD, fileName);
+        String id = _committee.findFile(fileName);
+        if (id != null) {
+            reactivate(Archivist.retrieve(id), fileName);
+        }
     }
 
     /** Takes the version of the file as it exists in the commit with
@@ -397,43 +372,26 @@ public class Director {
         if (!_committee.checkout(branch)) {
             return;
         }
-        List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-        List<String> currFiles = _committee.trackedFiles();
-        List<String> givenFiles = _committee.trackedFilesOfBr(branch);
-
         String givenID = _committee.headOf(branch).sha1();
-
         if (!checkCheckout(givenID)) {
             return;
         }
-        for (String file : currFiles) {
-            if (!givenFiles.contains(file)) {
-                File deleteMe = new File(CWD_PATH + file);
-                restrictedDelete(deleteMe);
-            }
-        }
-        HashMap<String, byte[]> headBytes =
-                _committee.headBytesOfBranch(branch);
-        for (String fileName: headBytes.keySet()) {
-            reactivate(headBytes.get(fileName), fileName);
-        }
+        Commit target = _committee.headOf(branch);
+        deleteUntracked(target.blobs());
+        restage(target);
         _committee.updateBranch(branch);
-        _committee.save();
-        clearStage();
     }
 
     /** Creates a new branch which points to the current head commit.
      * @param branch the name of the branch to be created. */
     private void branch(String branch) {
         _committee.makeBranch(branch);
-        _committee.save();
     }
 
     /** Removes the branch pointer but not the commits it points to.
      * @param branch the name of the branch to be removed. */
     private void removeBranch(String branch) {
         _committee.removeBranch(branch);
-        _committee.save();
     }
 
     /** Checks out all the files tracked by the given commit. Removes
@@ -443,39 +401,149 @@ public class Director {
      * commit that also changes the current branch head.
      * @param commitID the ID the commit to reset as the head.  */
     private void reset(String commitID) {
-        List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-        List<String> files = _committee.trackedFilesOfCom(commitID);
-        if (files == null) {
+        commitID = _committee.resolveID(commitID);
+        if (commitID == null) {
             return;
         }
         if (!checkCheckout(commitID)) {
             return;
         }
-        for (String file: files) {
-            checkoutID(commitID, file);
+        Commit target = Commit.fromID(commitID);
+        deleteUntracked(target.blobs());
+        restage(target);
+        _committee.updateHead(target);
+    }
+
+    /** Deletes the working files that the head commit or the index track
+     * but a commit about to be checked out does not, along with any
+     * directories they leave empty.
+     * @param given the IDs of the blobs of the commit being checked out,
+     *              keyed by path. */
+    private void deleteUntracked(Map<String, String> given) {
+        HashSet<String> tracked = new HashSet<String>(
+                _committee.head().blobs().keySet());
+        tracked.addAll(_index.entries().keySet());
+        for (String file: tracked) {
+            if (!given.containsKey(file)) {
+                deleteWorking(file);
+            }
+        }
+    }
+
+    /** Brings every file tracked by a commit into the working directory
+     * and makes the index match it, so that nothing is staged. A file is
+     * only written if its working version is not already the commit's,
+     * which the index tells from the file's stat data alone unless the
+     * file has changed since it was staged, so a checkout between two
+     * commits that share most of their files writes only the files in
+     * which they differ. The files are written in parallel by a
+     * CheckoutWriter, and the index is only written once all of them
+     * have been, so a checkout that fails leaves the index, and the
+     * head, as they were.
+     * @param commit the commit whose files are checked out. */
+    private void restage(Commit commit) {
+        Map<String, String> target = commit.blobs();
+        for (String file: new ArrayList<String>(_index.entries().keySet())) {
+            if (!target.containsKey(file)) {
+                _index.remove(file);
+            }
+        }
+        TreeMap<String, String> changed = new TreeMap<String, String>();
+        for (Map.Entry<String, String> blob: target.entrySet()) {
+            String file = blob.getKey();
+            String id = blob.getValue();
+            if (!id.equals(_index.workingID(file))) {
+                changed.put(file, id);
+            } else if (!_index.contains(file)
+                    || !_index.get(file).id().equals(id)) {
+                _index.put(file, id);
+            }
+        }
+        CheckoutWriter.write(changed);
+        for (Map.Entry<String, String> blob: changed.entrySet()) {
+            _index.put(blob.getKey(), blob.getValue());
+        }
+        _index.write();
+    }
+
+    /** Moves every object in the archive into a single pack file, in
+     * which each committed version of a file is stored as a delta
+     * against its previous version where that saves space. */
+    private void repack() {
+        Archivist.repack(_committee.blobHistories());
+    }
+
+    /** Deletes everything in the repository that no branch can reach,
+     * clears the scratch folders, and repacks what is left. Objects
+     * written within the grace period set by gc.graceSeconds in the
+     * config, two weeks by default, are kept along with everything they
+     * reach, so nothing a command running alongside has just written is
+     * lost. Prints the number of bytes reclaimed, which is 0 when packing
+     * costs more than was swept. */
+    private void gc() {
+        long before = sizeOf(GITLET_FOLDER);
+        long cutoff = System.currentTimeMillis()
+                - Config.getLong("gc.graceSeconds", GRACE_SECONDS) * 1000;
+
+        Set<String> recent = Archivist.recentIDs(cutoff);
+        List<String> roots = _committee.roots();
+        for (String id: _committee.allIDs()) {
+            if (recent.contains(id)) {
+                roots.add(id);
+            }
         }
-        for (String file: workingFiles) {
-            if (!files.contains(file)) {
-                restrictedDelete(CWD_PATH + file);
+        Set<String> keep = _committee.reachableFrom(roots);
+        keep.addAll(recent);
+        keep.addAll(_index.blobs().values());
+
+        Archivist.repack(_committee.blobHistories(), keep);
+        Archivist.sweepScratch(cutoff);
+        _committee.pruneLedger();
+        CommitGraph.rebuild(_committee.allIDs());
+        clearFolder(LINK_FOLDER);
+        long reclaimed = Math.max(0, before - sizeOf(GITLET_FOLDER));
+        System.out.println("Reclaimed " + reclaimed + " bytes.");
+    }
+
+    /** Deletes every plain file in a scratch folder.
+     * @param folder the folder to be cleared. */
+    private static void clearFolder(File folder) {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file: files) {
+            if (file.isFile()) {
+                file.delete();
             }
         }
-        _committee.updateHead(commitID);
-        _committee.save();
-        clearStage();
+    }
+
+    /** Return the total size in bytes of the files under a folder.
+     * @param folder the folder to be measured. */
+    private static long sizeOf(File folder) {
+        long size = 0;
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return size;
+        }
+        for (File file: files) {
+            size += file.isDirectory() ? sizeOf(file) : file.length();
+        }
+        return size;
     }
 
     /** Essentially creates a new commit in the current branch which
      * contains the merged contents of both the current branch and the
-     * given branch. If a conflict between the contents exists, a merge
-     * conflict message will be displayed. Ties between "criss-cross"
-     * merges which have more than one merge parent distance will be
-     * broken by distance, else arbitrarily.
+     * given branch. Files changed in both are merged line by line, and
+     * if any of their lines conflict, a merge conflict message will be
+     * displayed. The split point is the best common ancestor of the two
+     * heads nearest the current head, following merge parents first, as
+     * Committee.findSplitPoint finds it.
      * @param branch the given branch we wish to merge into the current
      *               branch. */
     private void merge(String branch) {
-        List<String> stageAddFiles = plainFilenamesIn(".gitlet/stageAdd/");
-        List<String> stageRemFiles = plainFilenamesIn(".gitlet/stageRem/");
-        if (stageAddFiles.size() > 0 || stageRemFiles.size() > 0) {
+        if (_index.hasChanges(_committee.head())) {
             System.out.println("You have uncommitted changes.");
             return;
         }
@@ -488,87 +556,77 @@ public class Director {
             return;
         }
 
-        List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-        List<String> currFiles = _committee.trackedFiles();
-        List<String> givenFiles = _committee.trackedFilesOfBr(branch);
         String givenID = _committee.headOf(branch).sha1();
         if (!checkCheckout(givenID)) {
             return;
         }
-        Commit splitPoint = _committee.findSplitPoint(
-                _committee.currBranchName(), branch);
-        if (splitPoint.equals(_committee.headOf(branch))) {
+        String currID = _committee.head().sha1();
+        if (_committee.isAncestor(givenID, currID)) {
             System.out.println("Given branch is an ancestor "
                     + "of the current branch.");
             return;
         }
-        if (splitPoint.equals(_committee.head())) {
+        if (_committee.isAncestor(currID, givenID)) {
             System.out.println("Current branch fast-forwarded.");
             checkoutBranch(branch);
-            _committee.save();
             return;
         }
-        HashMap<String, File> splitFiles = splitPoint.files();
-        HashMap<String, String> allFiles = new HashMap<String, String>();
-        for (String file: currFiles) {
-            allFiles.put(file, "dummy string");
-        }
-        for (String file: givenFiles) {
-            allFiles.put(file, "dummy string");
-        }
-
-        boolean mergeConflict = false;
-        for (String file: allFiles.keySet()) {
-            if (!mergeHandle(splitFiles, currFiles, givenFiles,
-                    splitPoint, branch, file)) {
-                mergeConflict = true;
+        Commit splitPoint = _committee.findSplitPoint(
+                _committee.currBranchName(), branch);
+        MergePlan plan = new MergePlan(splitPoint.blobs(),
+                _committee.head().blobs(), _committee.headOf(branch).blobs());
+        boolean conflicted = false;
+        for (MergePlan.Step step: plan.steps()) {
+            String file = step.path();
+            switch (step.action()) {
+            case TAKE_THEIRS:
+                reactivate(Archivist.retrieve(step.given()), file);
+                _index.put(file, step.given());
+                break;
+            case DELETE:
+                _index.remove(file);
+                deleteWorking(file);
+                break;
+            default:
+                conflicted |= mergeFile(step);
+                _index.add(file);
+                break;
             }
         }
-        String currID = _committee.head().sha1();
-        if (mergeConflict) {
+        _index.write();
+        if (conflicted) {
             System.out.println("Encountered a merge conflict.");
         }
         commit("Merged " + branch + " into "
                 + _committee.currBranchName() + ".", currID, givenID);
-        _committee.save();
-    }
-
-    /** Handles merge conflicts by writing a conflict message into the
-     * file which has been modified differently between two branches since
-     * their last splitPoint.
-     * @param file the name of the file which has caused the merge conflict.
-     * @param currVersion the byte array of the version of file in one branch.
-     * @param givenVersion the bytes of the version of file in the other. */
-    private void handleConflict(String file, byte[] currVersion,
-                                byte[] givenVersion) {
-        String mergeMessage = "<<<<<<< HEAD\n";
-
-        File tempFile = new File(".gitlet/temp/" + file);
-        join(TEMP_FOLDER, ".gitlet/temp/" + file);
-        try {
-            tempFile.createNewFile();
-        } catch (IOException ex) {
-            System.out.println("Path leading to file "
-                    + "is imcomplete or malformed.");
-        }
-        if (currVersion != null) {
-            writeContents(tempFile, currVersion);
-            mergeMessage += readContentsAsString(tempFile);
-        } else {
-            mergeMessage += "";
-        }
-        mergeMessage += "=======\n";
-        if (givenVersion != null) {
-            writeContents(tempFile, givenVersion);
-            mergeMessage += readContentsAsString(tempFile);
-        } else {
-            mergeMessage += "";
+    }
+
+    /** Writes the three-way merge of a file that has been modified in
+     * both branches since their split point into the working file,
+     * streaming it through a buffer. Return whether any of its lines
+     * conflict.
+     * @param step the step of the merge plan for the file. */
+    private boolean mergeFile(MergePlan.Step step) {
+        File file = new File(CWD_PATH + step.path());
+        file.getParentFile().mkdirs();
+        if (file.isFile()) {
+            file.delete();
+        }
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(file))) {
+            return Diff3.merge(out, retrieveOrNull(step.split()),
+                    retrieveOrNull(step.curr()),
+                    retrieveOrNull(step.given()));
+        } catch (IOException excp) {
+            throw Utils.error("Could not write %s: %s", step.path(),
+                    excp.getMessage());
         }
-        mergeMessage += ">>>>>>>\n";
+    }
 
-        writeContents(tempFile, mergeMessage);
-        moveFile(".gitlet/temp/", CWD_PATH, CWD, file);
-        add(file);
+    /** Return the contents of the blob ID, or null if ID is null.
+     * @param id the ID of a blob, or null. */
+    private static byte[] retrieveOrNull(String id) {
+        return id == null ? null : Archivist.retrieve(id);
     }
 
     /** Check if any working files could be overwritten by checking out
@@ -579,105 +637,19 @@ public class Director {
      * @return whether checkout out the commit with this ID will in fact
      * overwrite any untracked files. */
     private boolean checkCheckout(String commitID) {
-        List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-        List<String> currFiles = _committee.trackedFiles();
-        List<String> givenFiles = _committee.trackedFilesOfCom(commitID);
-        for (String file : givenFiles) {
-            if (workingFiles.contains(file) && currFiles.contains(file)) {
-                byte[] workingVersion = readContents(
-                        new File(CWD_PATH + file));
-                byte[] currVersion = _committee.headBytesOfBranch(
-                        _committee.currBranchName()).get(file);
-                if (!Arrays.equals(currVersion, workingVersion)) {
-                    System.out.println("There is an untracked file in the way;"
-                            + " delete it, or add and commit it first.");
-                    return false;
-                }
-            } else if (workingFiles.contains(file)
-                    && givenFiles.contains(file)) {
-                byte[] workingVersion = readContents(
-                        new File(CWD_PATH + file));
-                byte[] givenVersion = _committee.findFileVersion(
-                        file, commitID);
-                if (!Arrays.equals(givenVersion, workingVersion)) {
-                    System.out.println("There is an untracked file in the way;"
-                            + " delete it, or add and commit it first.");
-                    return false;
-                }
-            }
-        }
-        return true;
-    }
-
-    /** Helper function for the merge method. Evaluates a file in the context
-     * of the two branches being merged and of their splitpoint commit,
-     * performing the necessary additions, removals, or conflict handling
-     * depending on what merge case the file falls under.
-     * @param splitFiles the files tracked by the splitpoint commit.
-     * @param currFiles the files tracked by the head of the current branch.
-     * @param givenFiles the files tracked by the head of the given branch.
-     * @param splitPoint the commit representation of the splitpoint.
-     * @param branch the name of the given branch.
-     * @param file the name of the file to be evaluated.
-     * @return whether the file can be merged without conflict. */
-    private boolean mergeHandle(HashMap<String, File> splitFiles, List<String>
-            currFiles, List<String> givenFiles, Commit splitPoint,
-                                String branch, String file) {
-        boolean splitHasFile = splitFiles.containsKey(file);
-        boolean currHasFile = currFiles.contains(file);
-        boolean givenHasFile = givenFiles.contains(file);
-        byte[] splitVersion = new byte[]{};
-        byte[] currVersion = new byte[]{};
-        byte[] givenVersion = new byte[]{};
-        boolean currIsModified = false;
-        boolean givenIsModified = false;
-        boolean currEqGiven = false;
-        if (splitHasFile) {
-            splitVersion = _committee.findFileVersion(file, splitPoint.sha1());
-        }
-        if (currHasFile) {
-            currVersion = _committee.headBytesOfBranch(
-                    _committee.currBranchName()).get(file);
-            currIsModified = !Arrays.equals(splitVersion, currVersion);
-        }
-        if (givenHasFile) {
-            givenVersion = _committee.headBytesOfBranch(branch).get(file);
-            givenIsModified = !Arrays.equals(splitVersion, givenVersion);
-        }
-        if (currHasFile && givenHasFile) {
-            currEqGiven = Arrays.equals(currVersion, givenVersion);
-        }
-        if (!splitFiles.containsKey(file)) {
-            if (currHasFile && !givenHasFile) {
-                return true;
-            } else if (!currHasFile && givenHasFile) {
-                moveFile(".gitlet/files", CWD_PATH, CWD, file);
-                add(file);
-                return true;
-            } else if (!currEqGiven) {
-                handleConflict(file, currVersion, givenVersion);
-                return false;
+        Map<String, String> currBlobs = _committee.head().blobs();
+        Map<String, String> givenBlobs = _committee.blobsOfCom(commitID);
+        for (Map.Entry<String, String> given: givenBlobs.entrySet()) {
+            String working = _index.workingID(given.getKey());
+            if (working == null) {
+                continue;
             }
-        } else {
-            boolean case6 = currIsModified && givenIsModified && !currEqGiven;
-            boolean case7 =  currIsModified && currHasFile && !givenHasFile;
-            boolean case8 = givenIsModified && !currHasFile && givenHasFile;
-            if (case6 || case7 || case8) {
-                handleConflict(file, currVersion, givenVersion);
+            String expected = currBlobs.containsKey(given.getKey())
+                    ? currBlobs.get(given.getKey()) : given.getValue();
+            if (!expected.equals(working)) {
+                System.out.println("There is an untracked file in the way;"
+                        + " delete it, or add and commit it first.");
                 return false;
-            } else if (currHasFile && !givenHasFile && !currIsModified) {
-                remove(file);
-                return true;
-            } else if (!currHasFile && givenHasFile && !givenIsModified) {
-                return true;
-            } else if (!currIsModified && givenIsModified) {
-                moveFile(".gitlet/files", CWD_PATH, CWD, file);
-                add(file);
-                return true;
-            } else if (currIsModified && !givenIsModified) {
-                return true;
-            } else if (currIsModified && givenIsModified && currEqGiven) {
-                return true;
             }
         }
         return true;
@@ -691,8 +663,14 @@ public class Director {
     /** The Committee that this Director oversees and has access to. */
     private Committee _committee;
 
+    /** The staging area of the repository. */
+    private Index _index;
+
     /** Whether or not a .gitlet directory has already been initialized
      * under this Director's watch. */
     private boolean _gitletPresent;
 
+    /** Default grace period of gc, in seconds: two weeks. */
+    private static final long GRACE_SECONDS = 14 * 24 * 60 * 60;
+
 }
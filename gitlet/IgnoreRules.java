@@ -0,0 +1,254 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static gitlet.Main.IGNORE_FILE;
+
+/** The patterns of a .gitletignore file, naming working files and
+ * directories that are never listed as untracked or walked into.
+ *
+ * Each line of the file is a pattern, apart from blank lines and lines
+ * beginning with #. A pattern is a path whose segments may use the
+ * wildcards *, ? and [...], which never match a slash, and whose
+ * segments may be ** to match any number of directories. A pattern
+ * ending in a slash only matches directories. A pattern with no other
+ * slash matches a name at any depth; otherwise it is a path from the
+ * top of the working directory. Unlike git, gitlet has no patterns
+ * beginning with ! that unignore what an earlier pattern ignored.
+ *
+ * The patterns are compiled once into a trie with one edge per segment,
+ * shared by patterns with common leading segments. A walk keeps the set
+ * of trie nodes the path so far has reached, and moves it along one
+ * name at a time, so whether a path is ignored is known the moment its
+ * directory is listed, and an ignored directory is never listed.
+ * @author Daniel Chung
+ */
+class IgnoreRules {
+
+    /** The rules compiled from PATTERNS.
+     * @param patterns the lines of an ignore file. */
+    IgnoreRules(List<String> patterns) {
+        _root = new Node();
+        for (String line: patterns) {
+            String pattern = line.trim();
+            if (pattern.isEmpty() || pattern.startsWith("#")) {
+                continue;
+            }
+            boolean dirOnly = pattern.endsWith("/");
+            pattern = pattern.replaceAll("/+$", "");
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            Node node = _root;
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            } else if (pattern.indexOf('/') == -1) {
+                node = node.star();
+            }
+            for (String segment: pattern.split("/+")) {
+                node = node.child(segment);
+            }
+            if (dirOnly) {
+                node._dirOnly = true;
+            } else {
+                node._matches = true;
+            }
+        }
+        _start = new ArrayList<Node>();
+        step(_start, _root);
+    }
+
+    /** Return the rules in the working directory's .gitletignore, or
+     * rules that ignore nothing if there is none. */
+    static IgnoreRules load() {
+        if (!IGNORE_FILE.isFile()) {
+            return new IgnoreRules(new ArrayList<String>());
+        }
+        return new IgnoreRules(Arrays.asList(
+                Utils.readContentsAsString(IGNORE_FILE).split("\r?\n")));
+    }
+
+    /** Return the nodes reached by the empty path: the state of a walk
+     * at the top of the working directory. */
+    List<Node> start() {
+        return _start;
+    }
+
+    /** Return the state of a walk after it moves from the directory in
+     * state STATE to its entry NAME.
+     * @param state the nodes reached by the path of the directory.
+     * @param name the name of the entry. */
+    List<Node> step(List<Node> state, String name) {
+        List<Node> next = new ArrayList<Node>();
+        for (Node node: state) {
+            if (node._any) {
+                step(next, node);
+            }
+            Node literal = node._literals.get(name);
+            if (literal != null) {
+                step(next, literal);
+            }
+            for (Node glob: node._globs) {
+                if (glob._pattern.matcher(name).matches()) {
+                    step(next, glob);
+                }
+            }
+        }
+        return next;
+    }
+
+    /** Return the state of a walk after it moves from the top of the
+     * working directory down a relative path.
+     * @param path the path, with segments separated by slashes. */
+    List<Node> stepPath(String path) {
+        List<Node> state = _start;
+        for (String segment: path.split("/+")) {
+            if (!segment.isEmpty() && !segment.equals(".")) {
+                state = step(state, segment);
+            }
+        }
+        return state;
+    }
+
+    /** Return whether a path is ignored, either itself or because one of
+     * the directories above it is.
+     * @param path the path, relative to the working directory.
+     * @param isDirectory whether the path names a directory. */
+    boolean ignoresPath(String path, boolean isDirectory) {
+        String[] segments = path.split("/");
+        List<Node> state = _start;
+        for (int i = 0; i < segments.length; i += 1) {
+            state = step(state, segments[i]);
+            boolean last = i == segments.length - 1;
+            if (ignores(state, !last || isDirectory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return whether the entry a walk in state STATE has just reached
+     * is ignored.
+     * @param state the nodes reached by the entry's path.
+     * @param isDirectory whether the entry is a directory. */
+    static boolean ignores(List<Node> state, boolean isDirectory) {
+        for (Node node: state) {
+            if (node._matches || (isDirectory && node._dirOnly)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Adds NODE to NEXT, along with the ** node below it, which may
+     * match no segments at all, unless NEXT has them already.
+     * @param next the nodes reached so far.
+     * @param node the node reached. */
+    private static void step(List<Node> next, Node node) {
+        while (node != null && !next.contains(node)) {
+            next.add(node);
+            node = node._star;
+        }
+    }
+
+    /** Return the regular expression matching the same names as the
+     * one-segment glob GLOB.
+     * @param glob a segment of a pattern. */
+    private static Pattern compile(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i += 1) {
+            char c = glob.charAt(i);
+            int close = glob.indexOf(']', i + 2);
+            if (c == '*') {
+                regex.append("[^/]*");
+            } else if (c == '?') {
+                regex.append("[^/]");
+            } else if (c == '[' && close != -1) {
+                String set = glob.substring(i + 1, close);
+                if (set.startsWith("!")) {
+                    set = "^" + set.substring(1);
+                }
+                regex.append('[').append(set.replace("\\", "\\\\"))
+                        .append(']');
+                i = close;
+            } else {
+                regex.append(Pattern.quote(Character.toString(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    /** One node of the trie: the set of paths that match the leading
+     * segments of some patterns. */
+    static class Node {
+
+        /** Return the node below me reached by the segment SEGMENT,
+         * adding it if there is none.
+         * @param segment a segment of a pattern. */
+        private Node child(String segment) {
+            if (segment.equals("**")) {
+                return star();
+            }
+            if (segment.matches("[^*?\\[]*")) {
+                return _literals.computeIfAbsent(segment, k -> new Node());
+            }
+            for (Node glob: _globs) {
+                if (glob._glob.equals(segment)) {
+                    return glob;
+                }
+            }
+            Node glob = new Node();
+            glob._glob = segment;
+            glob._pattern = compile(segment);
+            _globs.add(glob);
+            return glob;
+        }
+
+        /** Return the node below me reached by a ** segment, adding it if
+         * there is none. */
+        private Node star() {
+            if (_star == null) {
+                _star = new Node();
+                _star._any = true;
+            }
+            return _star;
+        }
+
+        /** The nodes below me reached by literal segments, keyed by
+         * segment. */
+        private final HashMap<String, Node> _literals =
+                new HashMap<String, Node>();
+
+        /** The nodes below me reached by segments with wildcards. */
+        private final List<Node> _globs = new ArrayList<Node>();
+
+        /** The node below me reached by a ** segment, or null. */
+        private Node _star;
+
+        /** Whether I am a ** node, which any segment leads back to. */
+        private boolean _any;
+
+        /** The segment leading to me if it has wildcards, or null. */
+        private String _glob;
+
+        /** The compiled form of _glob. */
+        private Pattern _pattern;
+
+        /** Whether a pattern ends at me. */
+        private boolean _matches;
+
+        /** Whether a pattern that only matches directories ends at me. */
+        private boolean _dirOnly;
+    }
+
+    /** The top of the trie. */
+    private final Node _root;
+
+    /** The nodes reached by the empty path. */
+    private final List<Node> _start;
+
+}
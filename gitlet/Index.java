@@ -0,0 +1,412 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static gitlet.Main.CWD_PATH;
+import static gitlet.Main.INDEX_FILE;
+
+/** The staging area, kept in the single file .gitlet/index. The index
+ * lists every file the next commit will track, by path, with the ID of
+ * the blob holding its staged version and the mode, size and
+ * modification time the working file had when it was staged. A file is
+ * staged for addition when its blob differs from the head commit's and
+ * staged for removal when the head commit tracks it but the index does
+ * not, so committing never copies a file: the blobs were archived when
+ * the files were added.
+ *
+ * The stat data lets status, add and checkout trust a working file whose
+ * size, modification time, change time, inode and mode all match its
+ * entry without reading it. A file changed within the same tick of the
+ * file system's clock as it was staged keeps the same stat data, so an
+ * entry whose file was modified too recently before the index was
+ * written is "smudged": written with a modification time of 0, so that
+ * it never matches and the file is read again until it has aged.
+ *
+ * The index is written as "GLIX", a format version byte, the varint
+ * number of entries, the entries in order of path, and the SHA1 digest
+ * of everything before it. Each entry is its path as a varint length and
+ * UTF-8 bytes, the 20-byte blob ID, and varints for the mode, size,
+ * modification time and change time in milliseconds, and inode.
+ * @author Daniel Chung
+ */
+class Index {
+
+    /** An index with no entries. */
+    Index() {
+        _entries = new TreeMap<String, Entry>();
+    }
+
+    /** Return the index of the repository in the current directory. */
+    static Index read() {
+        Index index = new Index();
+        if (!INDEX_FILE.isFile()) {
+            return index;
+        }
+        byte[] contents = Utils.readContents(INDEX_FILE);
+        int bodyLength = contents.length - DIGEST_LENGTH;
+        MessageDigest digest = Utils.sha1Digest();
+        digest.update(contents, 0, Math.max(bodyLength, 0));
+        if (bodyLength < MAGIC.length || !Arrays.equals(digest.digest(),
+                Arrays.copyOfRange(contents, bodyLength, contents.length))) {
+            throw Utils.error("The index is corrupt.");
+        }
+        ByteBuffer in = ByteBuffer.wrap(contents, 0, bodyLength);
+        byte[] magic = new byte[MAGIC.length];
+        in.get(magic);
+        byte version = in.get();
+        if (!Arrays.equals(magic, MAGIC)
+                || version < 1 || version > FORMAT_VERSION) {
+            throw Utils.error("The index is in an unknown format.");
+        }
+        for (long n = Utils.readVarint(in); n > 0; n -= 1) {
+            String path = Utils.readString(in);
+            String id = Utils.readID(in);
+            int mode = (int) Utils.readVarint(in);
+            long size = Utils.readVarint(in);
+            long mtime = Utils.readVarint(in);
+            long ctime = version > 1 ? Utils.readVarint(in) : 0;
+            long inode = version > 1 ? Utils.readVarint(in) : 0;
+            index._entries.put(path,
+                    new Entry(id, mode, size, mtime, ctime, inode));
+        }
+        return index;
+    }
+
+    /** Saves me as the index of the repository in the current directory.
+     * I am written to a scratch file first and renamed over the old
+     * index, so a reader sees either the old index or the new one.
+     * Entries whose files were modified within RACY_MILLIS of now are
+     * smudged. */
+    void write() {
+        long racy = System.currentTimeMillis() - RACY_MILLIS;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(FORMAT_VERSION);
+        Utils.writeVarint(out, _entries.size());
+        for (Map.Entry<String, Entry> item: _entries.entrySet()) {
+            Entry entry = item.getValue();
+            Utils.writeString(out, item.getKey());
+            Utils.writeID(out, entry.id());
+            Utils.writeVarint(out, entry.mode());
+            Utils.writeVarint(out, entry.size());
+            Utils.writeVarint(out, entry.mtime() >= racy ? 0 : entry.mtime());
+            Utils.writeVarint(out, entry.ctime());
+            Utils.writeVarint(out, entry.inode());
+        }
+        byte[] body = out.toByteArray();
+        MessageDigest digest = Utils.sha1Digest();
+        digest.update(body);
+        out.write(digest.digest(), 0, DIGEST_LENGTH);
+
+        Utils.writeAtomically(INDEX_FILE, out.toByteArray());
+        _refreshed = false;
+    }
+
+    /** Saves me if workingID has brought the stat data of any of my
+     * entries up to date since I was read or last saved. */
+    void writeIfRefreshed() {
+        if (_refreshed) {
+            write();
+        }
+    }
+
+    /** Stages the current contents of a working file, archiving them if
+     * they are not archived already. A file whose stat data matches its
+     * entry is not read at all.
+     * @param path the path of the file, relative to the working
+     *             directory.
+     * @return the ID of the blob now staged for the file. */
+    String add(String path) {
+        File file = new File(CWD_PATH + path);
+        Entry entry = _entries.get(path);
+        Entry stat = Entry.of(file, null);
+        if (entry != null && stat.sameStat(entry)) {
+            return entry.id();
+        }
+        String id = new Blob(file).sha1();
+        _entries.put(path, stat.withID(id));
+        return id;
+    }
+
+    /** Return the ID of the blob the working file at a path would be
+     * archived as, or null if there is no such file. The file is only
+     * read if its stat data differs from my entry for it; if it then
+     * turns out to match the entry's blob anyway, the entry's stat data
+     * is brought up to date so that the next call need not read it.
+     * @param path the path of the file, relative to the working
+     *             directory. */
+    String workingID(String path) {
+        File file = new File(CWD_PATH + path);
+        if (!file.isFile()) {
+            return null;
+        }
+        return workingID(path, Entry.of(file, null));
+    }
+
+    /** Return the ID of the blob the working file at a path would be
+     * archived as, as workingID(PATH) does, given the file's stat data if
+     * it is known.
+     * @param path the path of the file, relative to the working
+     *             directory.
+     * @param stat the stat data of the file, with any blob ID, or null if
+     *             it must be read. */
+    String workingID(String path, Entry stat) {
+        if (stat == null) {
+            return workingID(path);
+        }
+        File file = new File(CWD_PATH + path);
+        Entry entry = _entries.get(path);
+        if (entry == null) {
+            return Archivist.hash(file);
+        }
+        if (stat.sameStat(entry)) {
+            return entry.id();
+        }
+        String id = Archivist.hash(file);
+        if (id.equals(entry.id())) {
+            _entries.put(path, stat.withID(id));
+            _refreshed = true;
+        }
+        return id;
+    }
+
+    /** Stages a file at the version held by a blob, as when a commit's
+     * version of it has just been written to the working directory.
+     * @param path the path of the file.
+     * @param id the ID of the blob staged for it. */
+    void put(String path, String id) {
+        File file = new File(CWD_PATH + path);
+        _entries.put(path, file.isFile() ? Entry.of(file, id)
+                : new Entry(id, REGULAR, 0, 0, 0, 0));
+    }
+
+    /** Unstages a file, so that the next commit does not track it.
+     * @param path the path of the file. */
+    void remove(String path) {
+        _entries.remove(path);
+    }
+
+    /** Return my entry for a path, or null if I have none.
+     * @param path the path of the file. */
+    Entry get(String path) {
+        return _entries.get(path);
+    }
+
+    /** Return whether I have an entry for a path.
+     * @param path the path of the file. */
+    boolean contains(String path) {
+        return _entries.containsKey(path);
+    }
+
+    /** Return my entries, keyed by path, in order of path. */
+    TreeMap<String, Entry> entries() {
+        return _entries;
+    }
+
+    /** Return the IDs of my staged blobs, keyed by path. */
+    Map<String, String> blobs() {
+        HashMap<String, String> blobs = new HashMap<String, String>();
+        for (Map.Entry<String, Entry> item: _entries.entrySet()) {
+            blobs.put(item.getKey(), item.getValue().id());
+        }
+        return blobs;
+    }
+
+    /** Return the blobs I stage that differ from a commit's: the files
+     * staged for addition, keyed by path, in order of path.
+     * @param commit the commit I am compared against. */
+    TreeMap<String, String> additions(Commit commit) {
+        Map<String, String> tracked = commit.blobs();
+        TreeMap<String, String> additions = new TreeMap<String, String>();
+        for (Map.Entry<String, Entry> item: _entries.entrySet()) {
+            String id = item.getValue().id();
+            if (!id.equals(tracked.get(item.getKey()))) {
+                additions.put(item.getKey(), id);
+            }
+        }
+        return additions;
+    }
+
+    /** Return the paths a commit tracks that I do not: the files staged
+     * for removal, in order of path.
+     * @param commit the commit I am compared against. */
+    TreeMap<String, String> removals(Commit commit) {
+        TreeMap<String, String> removals = new TreeMap<String, String>();
+        for (Map.Entry<String, String> blob: commit.blobs().entrySet()) {
+            if (!_entries.containsKey(blob.getKey())) {
+                removals.put(blob.getKey(), blob.getValue());
+            }
+        }
+        return removals;
+    }
+
+    /** Return whether I stage any change to a commit.
+     * @param commit the commit I am compared against. */
+    boolean hasChanges(Commit commit) {
+        return !additions(commit).isEmpty() || !removals(commit).isEmpty();
+    }
+
+    /** One staged file. */
+    static class Entry {
+
+        /** An entry for the blob with ID ID, whose working file had the
+         * given stat data when it was staged.
+         * @param id the ID of the staged blob.
+         * @param mode the file's mode, REGULAR or EXECUTABLE.
+         * @param size the file's size in bytes, or 0 if unknown.
+         * @param mtime the file's modification time in milliseconds, or
+         *              0 if unknown.
+         * @param ctime the file's change time in milliseconds, or 0 if
+         *              unknown.
+         * @param inode the file's inode number, or 0 if unknown. */
+        Entry(String id, int mode, long size, long mtime, long ctime,
+              long inode) {
+            _id = id;
+            _mode = mode;
+            _size = size;
+            _mtime = mtime;
+            _ctime = ctime;
+            _inode = inode;
+        }
+
+        /** Return an entry for the blob with ID ID recording the current
+         * stat data of FILE. Where the file system has no change times
+         * or inodes they are recorded as 0.
+         * @param file the working file the blob was read from.
+         * @param id the ID of the blob. */
+        static Entry of(File file, String id) {
+            try {
+                Map<String, Object> attrs = Files.readAttributes(
+                        file.toPath(), "unix:mode,size,lastModifiedTime,"
+                        + "ctime,ino");
+                boolean executable =
+                        ((Integer) attrs.get("mode") & EXECUTE_BITS) != 0;
+                return new Entry(id, executable ? EXECUTABLE : REGULAR,
+                        (Long) attrs.get("size"),
+                        ((FileTime) attrs.get("lastModifiedTime")).toMillis(),
+                        ((FileTime) attrs.get("ctime")).toMillis(),
+                        (Long) attrs.get("ino"));
+            } catch (UnsupportedOperationException excp) {
+                try {
+                    BasicFileAttributes attrs = Files.readAttributes(
+                            file.toPath(), BasicFileAttributes.class);
+                    return new Entry(id,
+                            file.canExecute() ? EXECUTABLE : REGULAR,
+                            attrs.size(), attrs.lastModifiedTime().toMillis(),
+                            0, 0);
+                } catch (IOException excp2) {
+                    throw Utils.error("Could not read %s.", file);
+                }
+            } catch (IOException excp) {
+                throw Utils.error("Could not read %s.", file);
+            }
+        }
+
+        /** Return an entry with my stat data for the blob with ID ID.
+         * @param id the ID of the blob. */
+        Entry withID(String id) {
+            return new Entry(id, _mode, _size, _mtime, _ctime, _inode);
+        }
+
+        /** Return whether OTHER records the same stat data as I do, so
+         * that the file it was made from can be trusted not to have
+         * changed. A smudged entry matches nothing.
+         * @param other the entry compared with me. */
+        boolean sameStat(Entry other) {
+            return _mtime != 0 && _mtime == other._mtime
+                    && _size == other._size && _mode == other._mode
+                    && _ctime == other._ctime && _inode == other._inode;
+        }
+
+        /** Return the ID of the staged blob. */
+        String id() {
+            return _id;
+        }
+
+        /** Return the file's mode. */
+        int mode() {
+            return _mode;
+        }
+
+        /** Return the file's size when it was staged. */
+        long size() {
+            return _size;
+        }
+
+        /** Return the file's modification time when it was staged. */
+        long mtime() {
+            return _mtime;
+        }
+
+        /** Return the file's change time when it was staged. */
+        long ctime() {
+            return _ctime;
+        }
+
+        /** Return the file's inode number when it was staged. */
+        long inode() {
+            return _inode;
+        }
+
+        /** The ID of the staged blob. */
+        private final String _id;
+
+        /** The file's mode. */
+        private final int _mode;
+
+        /** The file's size in bytes. */
+        private final long _size;
+
+        /** The file's modification time in milliseconds. */
+        private final long _mtime;
+
+        /** The file's change time in milliseconds. */
+        private final long _ctime;
+
+        /** The file's inode number. */
+        private final long _inode;
+    }
+
+    /** Mode of a regular file. */
+    static final int REGULAR = 0100644;
+
+    /** Mode of an executable file. */
+    static final int EXECUTABLE = 0100755;
+
+    /** The bytes that begin every index file. */
+    private static final byte[] MAGIC = {'G', 'L', 'I', 'X'};
+
+    /** The version of the format written by write. */
+    private static final byte FORMAT_VERSION = 2;
+
+    /** How recently before the index is written a file may have been
+     * modified and still be trusted by its stat data, in milliseconds.
+     * This is the coarsest timestamp granularity of common file
+     * systems. */
+    private static final long RACY_MILLIS = 2000;
+
+    /** The permission bits that make a file executable. */
+    private static final int EXECUTE_BITS = 0111;
+
+    /** Length of the SHA1 digest that ends the file. */
+    private static final int DIGEST_LENGTH = 20;
+
+    /** My entries, keyed by path. */
+    private final TreeMap<String, Entry> _entries;
+
+    /** Whether workingID has changed my entries since I was read or
+     * last saved. */
+    private boolean _refreshed;
+
+}
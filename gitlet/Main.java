@@ -54,35 +54,69 @@ public class Main {
      * for handling. */
     static final ArrayList<String> DIRECTIVES = new ArrayList<String>(
             Arrays.asList("init", "add", "commit", "rm", "checkout",
-                    "branch", "rm-branch", "reset", "merge"));
+                    "branch", "rm-branch", "reset", "merge", "repack",
+                    "gc", "monitor"));
 
     /** All recognized commands that the reporter is responsible
      * for handling. */
     static final ArrayList<String> REPORTIVES = new ArrayList<String>(
-            Arrays.asList("log", "global-log", "find", "status"));
+            Arrays.asList("log", "global-log", "find", "status", "diff"));
 
 
     /** Main metadata folder. */
     static final File GITLET_FOLDER = new File(".gitlet/");
 
-    /** Contains all files that have been staged, added and committed. */
-    static final File FILES_FOLDER = new File(".gitlet/files/");
+    /** Commits folder. */
+    static final File COMMITS_FOLDER = new File(".gitlet/commits/");
 
-    /** Works as a temporary area to initialize different versions of files
-     * than what exists in other folders. */
-    static final File TEMP_FOLDER = new File(".gitlet/temp/");
+    /** Ledger listing the ID of every commit, in the order made. */
+    static final File LEDGER_FILE = new File(".gitlet/commits/ledger");
 
-    /** Staging area addition folder. */
-    static final File STAGEADD_FOLDER = new File(".gitlet/stageAdd/");
+    /** Inflated, read-only copies of blobs, which checkout links into
+     * the working directory when checkout.hardlink is set. */
+    static final File LINK_FOLDER = new File(".gitlet/checkout/");
 
-    /** Staging area removal folder. */
-    static final File STAGEREM_FOLDER = new File(".gitlet/stageRem/");
+    /** Dense graph of the commit history, for ancestry queries. */
+    static final File GRAPH_FILE = new File(".gitlet/commits/graph");
 
-    /** Commits folder. */
-    static final File COMMITS_FOLDER = new File(".gitlet/commits/");
+    /** Refs folder, holding one file per branch that names its head. */
+    static final File REFS_FOLDER = new File(".gitlet/refs/");
+
+    /** Names the current branch. */
+    static final File HEAD_FILE = new File(".gitlet/HEAD");
+
+    /** The staging area: every file the next commit will track. */
+    static final File INDEX_FILE = new File(".gitlet/index");
+
+    /** Object archive folder, where file contents are kept by SHA1 ID. */
+    static final File OBJECTS_FOLDER = new File(".gitlet/objects/");
+
+    /** Pack folder, where repacked objects are kept. */
+    static final File PACK_FOLDER = new File(".gitlet/objects/pack/");
+
+    /** Optional settings of the repository. */
+    static final File CONFIG_FILE = new File(".gitlet/config");
+
+    /** Folder of the file-system monitor, if one has been run. */
+    static final File MONITOR_FOLDER = new File(".gitlet/monitor/");
+
+    /** Journal of working paths the monitor has seen change. */
+    static final File JOURNAL_FILE = new File(".gitlet/monitor/journal");
+
+    /** The working files as status last saw them, and how much of the
+     * journal it had read. */
+    static final File SNAPSHOT_FILE = new File(".gitlet/monitor/snapshot");
+
+    /** Where status leaves cookie files for the monitor to journal, so
+     * that it knows the journal has caught up. */
+    static final File COOKIE_FOLDER = new File(".gitlet/monitor/cookies/");
+
+    /** Locked by a running monitor for as long as it runs. */
+    static final File MONITOR_LOCK = new File(".gitlet/monitor/lock");
 
-    /** Blobs folder. */
-    static final File BLOBS_FOLDER = new File(".gitlet/blobs/");
+    /** Optional patterns naming working files that are never listed as
+     * untracked. */
+    static final File IGNORE_FILE = new File(".gitletignore");
 
     /** The Director object that Main oversees. */
     private static Director _director = new Director();
@@ -0,0 +1,165 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+
+/** What a merge does to each file, decided from the blob IDs of the
+ * split point, the current head and the given head alone. The three
+ * listings are walked side by side in order of path, as status walks
+ * its own, and a file whose two versions agree, or whose given version
+ * is the one at the split point, is kept as it is and left out. No blob
+ * is read until the plan is carried out, and then only those the given
+ * branch brings in or that conflict.
+ * @author Daniel Chung
+ */
+class MergePlan {
+
+    /** What is done to a file that is not kept as it is. */
+    enum Action {
+        /** The given branch's version is checked out and staged. */
+        TAKE_THEIRS,
+        /** The file is removed and staged for removal. */
+        DELETE,
+        /** The two versions are merged line by line against the split
+         * point's, and the result is staged. */
+        MERGE
+    }
+
+    /** The plan for merging the files of GIVEN into those of CURR, whose
+     * split point has the files of SPLIT.
+     * @param split the IDs of the blobs of the split point, by path.
+     * @param curr the IDs of the blobs of the current head, by path.
+     * @param given the IDs of the blobs of the given head, by path. */
+    MergePlan(SortedMap<String, String> split,
+              SortedMap<String, String> curr,
+              SortedMap<String, String> given) {
+        Iterator<Map.Entry<String, String>> splits =
+                split.entrySet().iterator();
+        Iterator<Map.Entry<String, String>> currs =
+                curr.entrySet().iterator();
+        Iterator<Map.Entry<String, String>> givens =
+                given.entrySet().iterator();
+        Map.Entry<String, String> s = Status.next(splits);
+        Map.Entry<String, String> c = Status.next(currs);
+        Map.Entry<String, String> g = Status.next(givens);
+
+        while (c != null || g != null) {
+            String path = Status.least(s == null ? null : s.getKey(),
+                    c == null ? null : c.getKey(),
+                    g == null ? null : g.getKey());
+            boolean inSplit = s != null && s.getKey().equals(path);
+            boolean inCurr = c != null && c.getKey().equals(path);
+            boolean inGiven = g != null && g.getKey().equals(path);
+
+            Action action = decide(inSplit ? s.getValue() : null,
+                    inCurr ? c.getValue() : null,
+                    inGiven ? g.getValue() : null);
+            if (action != null) {
+                _steps.add(new Step(path, action,
+                        inSplit ? s.getValue() : null,
+                        inCurr ? c.getValue() : null,
+                        inGiven ? g.getValue() : null));
+            }
+
+            if (inSplit) {
+                s = Status.next(splits);
+            }
+            if (inCurr) {
+                c = Status.next(currs);
+            }
+            if (inGiven) {
+                g = Status.next(givens);
+            }
+        }
+    }
+
+    /** Return what is done to a file given the IDs of its versions, any
+     * of which is null if the file is missing there, or null if it is
+     * kept as it is.
+     * @param split the ID of the version at the split point.
+     * @param curr the ID of the version in the current head.
+     * @param given the ID of the version in the given head. */
+    private static Action decide(String split, String curr, String given) {
+        if (Objects.equals(curr, given) || Objects.equals(split, given)) {
+            return null;
+        } else if (Objects.equals(split, curr)) {
+            return given == null ? Action.DELETE : Action.TAKE_THEIRS;
+        } else {
+            return Action.MERGE;
+        }
+    }
+
+    /** Return the files that are not kept as they are, in order of
+     * path. */
+    List<Step> steps() {
+        return _steps;
+    }
+
+    /** What is done to one file. */
+    static class Step {
+
+        /** ACTION is done to the file at PATH, whose versions are the
+         * blobs SPLIT, CURR and GIVEN.
+         * @param path the path of the file.
+         * @param action what is done to it.
+         * @param split the ID of the split point's version, or null.
+         * @param curr the ID of the current head's version, or null.
+         * @param given the ID of the given head's version, or null. */
+        Step(String path, Action action, String split, String curr,
+             String given) {
+            _path = path;
+            _action = action;
+            _split = split;
+            _curr = curr;
+            _given = given;
+        }
+
+        /** Return the path of my file. */
+        String path() {
+            return _path;
+        }
+
+        /** Return what is done to my file. */
+        Action action() {
+            return _action;
+        }
+
+        /** Return the ID of the split point's version, or null. */
+        String split() {
+            return _split;
+        }
+
+        /** Return the ID of the current head's version, or null. */
+        String curr() {
+            return _curr;
+        }
+
+        /** Return the ID of the given head's version, or null. */
+        String given() {
+            return _given;
+        }
+
+        /** The path of my file. */
+        private final String _path;
+
+        /** What is done to my file. */
+        private final Action _action;
+
+        /** The ID of the split point's version, or null. */
+        private final String _split;
+
+        /** The ID of the current head's version, or null. */
+        private final String _curr;
+
+        /** The ID of the given head's version, or null. */
+        private final String _given;
+    }
+
+    /** The files that are not kept as they are, in order of path. */
+    private final List<Step> _steps = new ArrayList<Step>();
+
+}
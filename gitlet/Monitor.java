@@ -0,0 +1,546 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static gitlet.Main.COOKIE_FOLDER;
+import static gitlet.Main.CWD;
+import static gitlet.Main.CWD_PATH;
+import static gitlet.Main.IGNORE_FILE;
+import static gitlet.Main.JOURNAL_FILE;
+import static gitlet.Main.MONITOR_FOLDER;
+import static gitlet.Main.MONITOR_LOCK;
+import static gitlet.Main.SNAPSHOT_FILE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/** An optional file-system monitor, started with "gitlet monitor" and
+ * left running in the background, that spares status from walking the
+ * whole working directory.
+ *
+ * The monitor watches every directory that is not ignored and appends
+ * the path of each entry that changes to a journal in .gitlet/monitor,
+ * one per line. The journal begins with a line naming the monitor's
+ * session; a new session, with a fresh journal, begins whenever a
+ * monitor starts or the journal grows past JOURNAL_LIMIT. A line
+ * holding only OVERFLOW_MARK records that the watcher lost events.
+ *
+ * Status keeps a snapshot of the working files and their stat data as
+ * it last saw them, with the session and the length of journal it had
+ * read. Before trusting the journal, status makes a cookie file in
+ * .gitlet/monitor/cookies, which the monitor also watches, and waits
+ * for the monitor to journal it. The watcher reports events in the
+ * order they happened, so once the cookie is journaled so is every
+ * change made before status began; if it is not journaled within
+ * COOKIE_TIMEOUT, status walks instead. While a monitor holds the
+ * lock, status reads only the journal
+ * written since, re-examines the paths in it, and takes every other
+ * file from the snapshot without looking at it. It walks the whole
+ * working directory instead when no monitor is running, when the
+ * session has changed, when the watcher overflowed, or when the ignore
+ * file changed.
+ * @author Daniel Chung
+ */
+class Monitor {
+
+    /** A monitor of the working directory.
+     * @throws IOException if the watcher cannot be made. */
+    private Monitor() throws IOException {
+        _watcher = FileSystems.getDefault().newWatchService();
+        _rules = IgnoreRules.load();
+        _keys = new HashMap<WatchKey, String>();
+    }
+
+    /** Watches the working directory until the process is killed,
+     * holding the monitor lock the whole time. Prints a message and
+     * returns at once if another monitor holds it. */
+    static void run() {
+        MONITOR_FOLDER.mkdirs();
+        try (FileChannel channel = FileChannel.open(MONITOR_LOCK.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                System.out.println("A monitor is already running.");
+                return;
+            }
+            new Monitor().watch();
+        } catch (IOException excp) {
+            throw Utils.error("Could not monitor the working directory.");
+        } catch (InterruptedException excp) {
+            return;
+        }
+    }
+
+    /** Return whether a monitor is running for this repository. */
+    static boolean isRunning() {
+        if (!MONITOR_LOCK.isFile()) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(MONITOR_LOCK.toPath(),
+                StandardOpenOption.WRITE)) {
+            FileLock lock = channel.tryLock();
+            if (lock == null) {
+                return true;
+            }
+            lock.release();
+            return false;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return the files in the working directory that are not ignored,
+     * with their stat data, in order of path, as WorkingTree.walk does.
+     * While a monitor is running only the paths it has journaled since
+     * the last call are looked at; the rest come from the snapshot saved
+     * by that call. */
+    static List<WorkingTree.Item> working() {
+        if (!isRunning() || !JOURNAL_FILE.isFile()) {
+            return WorkingTree.walk();
+        }
+        byte[] journal = sync();
+        if (journal == null) {
+            return WorkingTree.walk();
+        }
+        int header = indexOf(journal, '\n', 0);
+        if (header == -1) {
+            return WorkingTree.walk();
+        }
+        String session = new String(journal, 0, header,
+                StandardCharsets.UTF_8);
+        int end = header + 1;
+        for (int i = journal.length - 1; i > header; i -= 1) {
+            if (journal[i] == '\n') {
+                end = i + 1;
+                break;
+            }
+        }
+
+        Snapshot snapshot = Snapshot.read();
+        List<WorkingTree.Item> items = null;
+        if (snapshot != null && snapshot._session.equals(session)
+                && snapshot._offset <= end) {
+            HashSet<String> dirty = new HashSet<String>(Arrays.asList(
+                    new String(journal, snapshot._offset,
+                            end - snapshot._offset, StandardCharsets.UTF_8)
+                            .split("\n")));
+            dirty.remove("");
+            dirty.removeIf(path -> path.startsWith(COOKIE_MARK));
+            if (dirty.isEmpty()) {
+                return snapshot._items;
+            }
+            if (!dirty.contains(OVERFLOW_MARK)
+                    && !dirty.contains(IGNORE_FILE.getName())) {
+                items = update(snapshot._items, dirty);
+            }
+        }
+        if (items == null) {
+            items = WorkingTree.walk();
+        }
+        new Snapshot(session, end, items).write();
+        return items;
+    }
+
+    /** Return the journal once the monitor has journaled every change
+     * made before now, or null if it has not within COOKIE_TIMEOUT. A
+     * cookie file is made for the monitor to see, and the journal is
+     * read until the monitor has journaled the cookie. */
+    private static byte[] sync() {
+        File cookie;
+        try {
+            cookie = File.createTempFile("cookie", null, COOKIE_FOLDER);
+        } catch (IOException excp) {
+            return null;
+        }
+        String mark = "\n" + COOKIE_MARK + " " + cookie.getName() + "\n";
+        long deadline = System.currentTimeMillis() + COOKIE_TIMEOUT;
+        try {
+            while (true) {
+                byte[] journal = Utils.readContents(JOURNAL_FILE);
+                if (new String(journal, StandardCharsets.ISO_8859_1)
+                        .contains(mark)) {
+                    return journal;
+                }
+                if (System.currentTimeMillis() > deadline) {
+                    return null;
+                }
+                Thread.sleep(1);
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            cookie.delete();
+        }
+    }
+
+    /** Return the working files as they are now, given a list of them as
+     * they were and the paths that have changed since.
+     * @param items the files as they were, in order of path.
+     * @param dirty the paths of the files and directories that changed.
+     * @return the files as they are, in order of path. */
+    private static List<WorkingTree.Item> update(
+            List<WorkingTree.Item> items, Set<String> dirty) {
+        IgnoreRules rules = IgnoreRules.load();
+        TreeMap<String, WorkingTree.Item> fresh =
+                new TreeMap<String, WorkingTree.Item>();
+        for (String path: dirty) {
+            File file = new File(CWD_PATH + path);
+            if (file.isFile() && !rules.ignoresPath(path, false)) {
+                fresh.put(path, new WorkingTree.Item(path,
+                        Index.Entry.of(file, null)));
+            } else if (isDirectory(file)
+                    && !rules.ignoresPath(path, true)) {
+                for (WorkingTree.Item item: WorkingTree.walk(path)) {
+                    fresh.put(item.path(), item);
+                }
+            }
+        }
+
+        List<WorkingTree.Item> result = new ArrayList<WorkingTree.Item>();
+        Iterator<WorkingTree.Item> added = fresh.values().iterator();
+        WorkingTree.Item next = added.hasNext() ? added.next() : null;
+        for (WorkingTree.Item item: items) {
+            if (covered(item.path(), dirty)) {
+                continue;
+            }
+            while (next != null && next.path().compareTo(item.path()) < 0) {
+                result.add(next);
+                next = added.hasNext() ? added.next() : null;
+            }
+            result.add(item);
+        }
+        while (next != null) {
+            result.add(next);
+            next = added.hasNext() ? added.next() : null;
+        }
+        return result;
+    }
+
+    /** Return whether a path, or a directory above it, has changed.
+     * @param path the path of a file.
+     * @param dirty the paths that have changed. */
+    private static boolean covered(String path, Set<String> dirty) {
+        if (dirty.contains(path)) {
+            return true;
+        }
+        for (int slash = path.indexOf('/'); slash != -1;
+             slash = path.indexOf('/', slash + 1)) {
+            if (dirty.contains(path.substring(0, slash))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return whether FILE is a directory and not a symbolic link to
+     * one. Links are never followed, as in WorkingTree, so a link back up
+     * the tree is not watched round in circles.
+     * @param file the file. */
+    private static boolean isDirectory(File file) {
+        return Files.isDirectory(file.toPath(), LinkOption.NOFOLLOW_LINKS);
+    }
+
+    /** Return the index of the first byte C in BYTES at or after START,
+     * or -1 if there is none.
+     * @param bytes the bytes searched.
+     * @param c the byte sought.
+     * @param start where the search begins. */
+    private static int indexOf(byte[] bytes, char c, int start) {
+        for (int i = start; i < bytes.length; i += 1) {
+            if (bytes[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /** Journals changes to the working directory until interrupted.
+     * @throws IOException if the journal cannot be written.
+     * @throws InterruptedException if the wait for events is
+     *                              interrupted. */
+    private void watch() throws IOException, InterruptedException {
+        startJournal();
+        COOKIE_FOLDER.mkdirs();
+        _cookies = COOKIE_FOLDER.toPath().register(_watcher, ENTRY_CREATE);
+        register(CWD, "", _rules.start());
+        while (true) {
+            WatchKey key = _watcher.take();
+            StringBuilder lines = new StringBuilder();
+            if (key == _cookies) {
+                List<String> cookies = new ArrayList<String>();
+                takeCookies(key, cookies);
+                for (WatchKey more = _watcher.poll(); more != null;
+                     more = _watcher.poll()) {
+                    if (more == _cookies) {
+                        takeCookies(more, cookies);
+                    } else {
+                        journal(more, lines);
+                    }
+                }
+                for (String cookie: cookies) {
+                    lines.append(COOKIE_MARK).append(' ').append(cookie)
+                            .append('\n');
+                }
+            } else {
+                journal(key, lines);
+            }
+            append(lines.toString());
+        }
+    }
+
+    /** Adds the names of the cookies KEY has seen made to COOKIES. Any
+     * events for working files that came before them are waiting on
+     * other keys, and must be journaled first.
+     * @param key the watch key of the cookie folder.
+     * @param cookies the names of the cookies seen so far. */
+    private void takeCookies(WatchKey key, List<String> cookies) {
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if (event.kind() == ENTRY_CREATE) {
+                cookies.add(event.context().toString());
+            }
+        }
+        key.reset();
+    }
+
+    /** Adds a line to LINES for every change KEY has seen, watching any
+     * new directory that is not ignored.
+     * @param key the watch key of a working directory.
+     * @param lines the lines to be journaled.
+     * @throws IOException if a new directory cannot be watched. */
+    private void journal(WatchKey key, StringBuilder lines)
+            throws IOException {
+        String prefix = _keys.get(key);
+        for (WatchEvent<?> event: key.pollEvents()) {
+            if (event.kind() == OVERFLOW || prefix == null) {
+                lines.append(OVERFLOW_MARK).append('\n');
+                continue;
+            }
+            String path = prefix + event.context();
+            if (path.equals(".gitlet")) {
+                continue;
+            }
+            lines.append(path).append('\n');
+            File file = new File(CWD_PATH + path);
+            if (path.equals(IGNORE_FILE.getName())) {
+                _rules = IgnoreRules.load();
+                register(CWD, "", _rules.start());
+            } else if (event.kind() == ENTRY_CREATE && isDirectory(file)
+                    && !_rules.ignoresPath(path, true)) {
+                register(file, path + "/", _rules.stepPath(path));
+            }
+        }
+        if (!key.reset()) {
+            _keys.remove(key);
+        }
+    }
+
+    /** Watches a directory and every directory under it that is not
+     * ignored. Each directory is watched before it is listed, so that no
+     * subdirectory made in between is missed.
+     * @param dir the directory.
+     * @param prefix its path, ending in a slash, or the empty string for
+     *               the working directory.
+     * @param state the state of the ignore rules at DIR.
+     * @throws IOException if the directory cannot be watched. */
+    private void register(File dir, String prefix,
+                          List<IgnoreRules.Node> state) throws IOException {
+        _keys.put(dir.toPath().register(_watcher, ENTRY_CREATE,
+                ENTRY_DELETE, ENTRY_MODIFY), prefix);
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child: children) {
+            String name = child.getName();
+            if (!isDirectory(child)
+                    || (prefix.isEmpty() && name.equals(".gitlet"))) {
+                continue;
+            }
+            List<IgnoreRules.Node> next = _rules.step(state, name);
+            if (!IgnoreRules.ignores(next, true)) {
+                register(child, prefix + name + "/", next);
+            }
+        }
+    }
+
+    /** Begins a new session with an empty journal.
+     * @throws IOException if the journal cannot be written. */
+    private void startJournal() throws IOException {
+        if (_journal != null) {
+            _journal.close();
+        }
+        String session = "session " + Long.toHexString(RANDOM.nextLong())
+                + Long.toHexString(System.nanoTime()) + "\n";
+        Utils.writeContents(JOURNAL_FILE, session);
+        _journal = new FileOutputStream(JOURNAL_FILE, true);
+        _journalSize = session.length();
+    }
+
+    /** Appends LINES to the journal in one write, beginning a new session
+     * first if they would make it too long.
+     * @param lines whole lines of the journal.
+     * @throws IOException if the journal cannot be written. */
+    private void append(String lines) throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        byte[] bytes = lines.getBytes(StandardCharsets.UTF_8);
+        if (_journalSize + bytes.length > JOURNAL_LIMIT) {
+            startJournal();
+        }
+        _journal.write(bytes);
+        _journal.flush();
+        _journalSize += bytes.length;
+    }
+
+    /** The working files as status last saw them. A snapshot is written
+     * as "GLWS", a format version byte, the session, the length of
+     * journal read, the varint number of files and, for each file in
+     * order of path, its path and varints for its mode, size,
+     * modification time, change time and inode. */
+    private static class Snapshot {
+
+        /** A snapshot of ITEMS taken after reading OFFSET bytes of the
+         * journal of SESSION.
+         * @param session the first line of the journal.
+         * @param offset the number of bytes of the journal read.
+         * @param items the working files, in order of path. */
+        Snapshot(String session, int offset, List<WorkingTree.Item> items) {
+            _session = session;
+            _offset = offset;
+            _items = items;
+        }
+
+        /** Return the saved snapshot, or null if there is none or it
+         * cannot be read. */
+        static Snapshot read() {
+            if (!SNAPSHOT_FILE.isFile()) {
+                return null;
+            }
+            try {
+                ByteBuffer in = ByteBuffer.wrap(
+                        Utils.readContents(SNAPSHOT_FILE));
+                byte[] magic = new byte[MAGIC.length];
+                in.get(magic);
+                if (!Arrays.equals(magic, MAGIC)
+                        || in.get() != FORMAT_VERSION) {
+                    return null;
+                }
+                String session = Utils.readString(in);
+                int offset = (int) Utils.readVarint(in);
+                int count = (int) Utils.readVarint(in);
+                List<WorkingTree.Item> items =
+                        new ArrayList<WorkingTree.Item>(count);
+                for (int i = 0; i < count; i += 1) {
+                    String path = Utils.readString(in);
+                    int mode = (int) Utils.readVarint(in);
+                    long size = Utils.readVarint(in);
+                    long mtime = Utils.readVarint(in);
+                    long ctime = Utils.readVarint(in);
+                    long inode = Utils.readVarint(in);
+                    items.add(new WorkingTree.Item(path, new Index.Entry(
+                            null, mode, size, mtime, ctime, inode)));
+                }
+                return new Snapshot(session, offset, items);
+            } catch (BufferUnderflowException excp) {
+                return null;
+            }
+        }
+
+        /** Saves me. */
+        void write() {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(MAGIC, 0, MAGIC.length);
+            out.write(FORMAT_VERSION);
+            Utils.writeString(out, _session);
+            Utils.writeVarint(out, _offset);
+            Utils.writeVarint(out, _items.size());
+            for (WorkingTree.Item item: _items) {
+                Index.Entry stat = item.stat();
+                Utils.writeString(out, item.path());
+                Utils.writeVarint(out, stat.mode());
+                Utils.writeVarint(out, stat.size());
+                Utils.writeVarint(out, stat.mtime());
+                Utils.writeVarint(out, stat.ctime());
+                Utils.writeVarint(out, stat.inode());
+            }
+            Utils.writeAtomically(SNAPSHOT_FILE, out.toByteArray());
+        }
+
+        /** The first line of the journal when I was taken. */
+        private final String _session;
+
+        /** The number of bytes of the journal read when I was taken. */
+        private final int _offset;
+
+        /** The working files, in order of path. */
+        private final List<WorkingTree.Item> _items;
+    }
+
+    /** The line journaled when the watcher has lost events. */
+    private static final String OVERFLOW_MARK = "!overflow";
+
+    /** The start of the line journaled for each cookie. */
+    private static final String COOKIE_MARK = "!cookie";
+
+    /** Milliseconds status waits for its cookie to be journaled. */
+    private static final long COOKIE_TIMEOUT = 1000;
+
+    /** Length in bytes past which the journal is begun afresh. */
+    private static final long JOURNAL_LIMIT = 1 << 20;
+
+    /** The bytes that begin every snapshot. */
+    private static final byte[] MAGIC = {'G', 'L', 'W', 'S'};
+
+    /** The version of the snapshot format. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** Source of session names. */
+    private static final Random RANDOM = new Random();
+
+    /** The watch service. */
+    private final WatchService _watcher;
+
+    /** The ignore rules, reloaded when the ignore file changes. */
+    private IgnoreRules _rules;
+
+    /** The path of each watched directory, ending in a slash, keyed by
+     * its watch key. */
+    private final HashMap<WatchKey, String> _keys;
+
+    /** The watch key of the cookie folder. */
+    private WatchKey _cookies;
+
+    /** The open journal. */
+    private FileOutputStream _journal;
+
+    /** The length of the journal in bytes. */
+    private long _journalSize;
+
+}
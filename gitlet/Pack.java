@@ -0,0 +1,472 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static gitlet.Main.PACK_FOLDER;
+
+/** A pack file, which holds many archived objects in one file, along
+ * with the index that locates each of them. An object in a pack is
+ * either stored whole or as a delta against another object earlier in
+ * the same pack, usually the previous version of the same file.
+ *
+ * A pack begins with the magic "PACK", a version number and the number
+ * of objects it holds, and ends with the SHA1 hash of everything before
+ * it. Each object is a type byte, the varint length of the object or
+ * delta as stored, for a delta the varint distance back to the start of
+ * its base, and then the deflated object or delta. Its index lists the
+ * 20-byte ID and the offset of every object, sorted by ID.
+ * @author Daniel Chung
+ */
+class Pack {
+
+    /** Opens the pack whose index is the given file. The index is
+     * mapped into memory rather than read, so opening a pack costs the
+     * same however many objects it holds.
+     * @param index the index file of the pack. */
+    Pack(File index) {
+        _index = index;
+        String name = index.getName();
+        _file = new File(index.getParentFile(),
+                name.substring(0, name.length() - IDX.length()) + PACK);
+        try (FileChannel channel = FileChannel.open(index.toPath())) {
+            _map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        } catch (IOException excp) {
+            throw Utils.error("Pack index %s is unreadable.", name);
+        }
+        if (_map.capacity() < FANOUT_START + FANOUT * Integer.BYTES
+                || _map.getInt(0) != IDX_MAGIC
+                || _map.getInt(Integer.BYTES) != IDX_VERSION) {
+            throw Utils.error("Pack index %s is corrupt.", name);
+        }
+        _count = _map.getInt(FANOUT_START + (FANOUT - 1) * Integer.BYTES);
+        _idsStart = FANOUT_START + FANOUT * Integer.BYTES;
+        _offsetsStart = _idsStart + (long) _count * ID_LENGTH;
+    }
+
+    /** Return whether I hold the object with the given ID.
+     * @param id the SHA1 ID of the object. */
+    boolean has(String id) {
+        return find(id) >= 0;
+    }
+
+    /** Return the IDs of all the objects I hold, in sorted order. */
+    List<String> ids() {
+        List<String> ids = new ArrayList<String>(_count);
+        byte[] id = new byte[ID_LENGTH];
+        for (int i = 0; i < _count; i += 1) {
+            _map.get(_idsStart + i * ID_LENGTH, id);
+            ids.add(Utils.hex(id));
+        }
+        return ids;
+    }
+
+    /** Return the contents of the object with the given ID, which I
+     * must hold.
+     * @param id the SHA1 ID of the object. */
+    byte[] retrieve(String id) {
+        try {
+            return read(_map.getLong((int) (_offsetsStart
+                    + (long) find(id) * Long.BYTES)));
+        } catch (IOException excp) {
+            throw Utils.error("Object %s is corrupt in %s.", id,
+                    _file.getName());
+        }
+    }
+
+    /** Return the position of an ID in my sorted index, or -1 if I do
+     * not hold it. The fan-out table narrows the search to the IDs that
+     * share its first byte, which are then searched by bisection.
+     * @param id the SHA1 ID of the object sought. */
+    private int find(String id) {
+        if (id.length() != 2 * ID_LENGTH) {
+            return -1;
+        }
+        byte[] key = Utils.unhex(id);
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0
+                : _map.getInt(FANOUT_START + (first - 1) * Integer.BYTES);
+        int hi = _map.getInt(FANOUT_START + first * Integer.BYTES) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compare(mid, key);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Return the comparison of the ID at a position of my index with
+     * KEY, treating both as unsigned bytes.
+     * @param pos the position in my index.
+     * @param key the ID being searched for, as bytes. */
+    private int compare(int pos, byte[] key) {
+        int at = _idsStart + pos * ID_LENGTH;
+        for (int k = 0; k < ID_LENGTH; k += 1) {
+            int cmp = (_map.get(at + k) & 0xff) - (key[k] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Return my pack file. */
+    File file() {
+        return _file;
+    }
+
+    /** Return my index file. */
+    File index() {
+        return _index;
+    }
+
+    /** Return the contents of the object stored at an offset of my pack
+     * file, applying deltas as needed. The pack file is only read at
+     * given positions, never by seeking, so any number of threads may
+     * read objects at once.
+     * @param offset the offset at which the object starts. */
+    private byte[] read(long offset) throws IOException {
+        FileChannel data = data();
+        byte[] header = new byte[MAX_HEADER];
+        int got = data.read(ByteBuffer.wrap(header), offset);
+        ByteBuffer in = ByteBuffer.wrap(header, 0, Math.max(got, 0));
+        int type = in.get();
+        int length = (int) Utils.readVarint(in);
+        long base = 0;
+        if (type == DELTA) {
+            base = offset - Utils.readVarint(in);
+        }
+
+        Inflater inflater = new Inflater();
+        InputStream body = new InflaterInputStream(
+                new ChannelStream(data, offset + in.position()), inflater);
+        byte[] contents = body.readNBytes(length);
+        inflater.end();
+        if (contents.length != length) {
+            throw new IOException("truncated object");
+        }
+        if (type == DELTA) {
+            return Delta.apply(read(base), contents);
+        }
+        return contents;
+    }
+
+    /** Return my pack file, opened for reading the first time it is
+     * needed. */
+    private synchronized FileChannel data() throws IOException {
+        if (_data == null) {
+            _data = FileChannel.open(_file.toPath());
+        }
+        return _data;
+    }
+
+    /** Writes a new pack into the pack folder holding the given objects,
+     * in order. Each entry is the ID of an object followed by the ID of
+     * the object, earlier in the list, that it should be stored as a
+     * delta against, or null. An object is stored whole instead when the
+     * delta would not be smaller or its base ends too long a chain.
+     * @param entries the objects to be packed and their delta bases.
+     * @return the new pack. */
+    static Pack write(List<String[]> entries) {
+        PACK_FOLDER.mkdirs();
+        File scratch;
+        try {
+            scratch = File.createTempFile("tmp-", null, PACK_FOLDER);
+        } catch (IOException excp) {
+            throw Utils.error("Could not write pack.");
+        }
+        HashMap<String, Long> offsets = new HashMap<String, Long>();
+        HashMap<String, Integer> depths = new HashMap<String, Integer>();
+        MessageDigest digest = Utils.sha1Digest();
+        byte[] checksum;
+        try (CountingOutputStream counter = new CountingOutputStream(
+                new BufferedOutputStream(
+                        Files.newOutputStream(scratch.toPath())));
+             DataOutputStream out = new DataOutputStream(
+                     new DigestOutputStream(counter, digest))) {
+            out.writeBytes(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+
+            String lastID = null;
+            byte[] last = null;
+            for (String[] entry: entries) {
+                String id = entry[0];
+                String base = entry[1];
+                byte[] contents = Archivist.retrieve(id);
+                byte[] body = contents;
+                int type = WHOLE;
+                if (base != null && offsets.containsKey(base)
+                        && depths.get(base) < MAX_DEPTH) {
+                    byte[] baseContents = base.equals(lastID)
+                            ? last : Archivist.retrieve(base);
+                    byte[] delta = Delta.create(baseContents, contents);
+                    if (delta.length < contents.length) {
+                        body = delta;
+                        type = DELTA;
+                    }
+                }
+                out.flush();
+                long offset = counter.count();
+                offsets.put(id, offset);
+                depths.put(id, type == DELTA ? depths.get(base) + 1 : 0);
+
+                ByteArrayOutputStream header = new ByteArrayOutputStream();
+                header.write(type);
+                Utils.writeVarint(header, body.length);
+                if (type == DELTA) {
+                    Utils.writeVarint(header, offset - offsets.get(base));
+                }
+                header.writeTo(out);
+                DeflaterOutputStream deflater =
+                        new DeflaterOutputStream(new Unclosed(out));
+                deflater.write(body);
+                deflater.close();
+
+                lastID = id;
+                last = contents;
+            }
+            out.flush();
+            checksum = digest.digest();
+            counter.write(checksum);
+        } catch (IOException excp) {
+            scratch.delete();
+            throw Utils.error("Could not write pack.");
+        }
+
+        String name = "pack-" + Utils.hex(checksum);
+        File packFile = new File(PACK_FOLDER, name + PACK);
+        File indexFile = new File(PACK_FOLDER, name + IDX);
+        if (!scratch.renameTo(packFile)) {
+            scratch.delete();
+            throw Utils.error("Could not write pack.");
+        }
+        writeIndex(indexFile, offsets);
+        return new Pack(indexFile);
+    }
+
+    /** Writes the index of a pack: a fan-out table whose entry for each
+     * byte value B counts the objects whose IDs begin with a byte no
+     * greater than B, then the IDs of all objects in sorted order, then
+     * their offsets in the same order. The index is written last, and
+     * atomically, so an index is never found without its whole pack.
+     * @param index the index file to be written.
+     * @param offsets the offset of every object, keyed by ID. */
+    private static void writeIndex(File index, HashMap<String, Long> offsets) {
+        List<String> ids = new ArrayList<String>(offsets.keySet());
+        Collections.sort(ids);
+        int[] fanout = new int[FANOUT];
+        for (String id: ids) {
+            fanout[Integer.parseInt(id.substring(0, 2), 16)] += 1;
+        }
+        for (int b = 1; b < FANOUT; b += 1) {
+            fanout[b] += fanout[b - 1];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(IDX_MAGIC);
+            out.writeInt(IDX_VERSION);
+            for (int count: fanout) {
+                out.writeInt(count);
+            }
+            for (String id: ids) {
+                out.write(Utils.unhex(id));
+            }
+            for (String id: ids) {
+                out.writeLong(offsets.get(id));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Could not write pack index.");
+        }
+        Utils.writeAtomically(index, bytes.toByteArray());
+    }
+
+    /** Return all packs in the pack folder. */
+    static List<Pack> all() {
+        List<Pack> packs = new ArrayList<Pack>();
+        List<String> names = Utils.plainFilenamesIn(PACK_FOLDER);
+        if (names != null) {
+            for (String name: names) {
+                if (name.endsWith(IDX)) {
+                    packs.add(new Pack(new File(PACK_FOLDER, name)));
+                }
+            }
+        }
+        return packs;
+    }
+
+    /** An output stream that counts the bytes written through it. */
+    private static class CountingOutputStream
+            extends FilterOutputStream {
+
+        /** A stream counting the bytes written to OUT.
+         * @param out the stream being counted. */
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            _count += 1;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            _count += len;
+        }
+
+        /** Return the number of bytes written so far. */
+        long count() {
+            return _count;
+        }
+
+        /** The number of bytes written so far. */
+        private long _count;
+    }
+
+    /** An output stream that passes everything on to another, but
+     * leaves it open when it is closed. */
+    private static class Unclosed extends FilterOutputStream {
+
+        /** A stream writing through to OUT.
+         * @param out the stream written to. */
+        Unclosed(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    /** An input stream reading a file channel from a position onwards
+     * with positional reads, which leave the channel's own position
+     * alone, so that streams on the same channel do not disturb each
+     * other. */
+    private static class ChannelStream extends InputStream {
+
+        /** A stream reading CHANNEL from POSITION.
+         * @param channel the channel read.
+         * @param position where reading starts. */
+        ChannelStream(FileChannel channel, long position) {
+            _channel = channel;
+            _position = position;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = _channel.read(ByteBuffer.wrap(b, off, len), _position);
+            if (n > 0) {
+                _position += n;
+            }
+            return n;
+        }
+
+        /** The channel read. */
+        private final FileChannel _channel;
+
+        /** Where the next read starts. */
+        private long _position;
+    }
+
+    /** Suffix of pack files. */
+    static final String PACK = ".pack";
+
+    /** Suffix of pack index files. */
+    static final String IDX = ".idx";
+
+    /** Magic number at the start of every pack. */
+    private static final String MAGIC = "PACK";
+
+    /** Version of the pack format. */
+    private static final int VERSION = 1;
+
+    /** Type of an object stored whole. */
+    private static final int WHOLE = 1;
+
+    /** Type of an object stored as a delta. */
+    private static final int DELTA = 2;
+
+    /** Magic number at the start of every pack index, "PIDX". */
+    private static final int IDX_MAGIC = 0x50494458;
+
+    /** Version of the pack index format. */
+    private static final int IDX_VERSION = 2;
+
+    /** Position in a pack index of the fan-out table. */
+    private static final int FANOUT_START = 2 * Integer.BYTES;
+
+    /** Number of entries in the fan-out table, one per byte value. */
+    private static final int FANOUT = 256;
+
+    /** Length of an ID in bytes. */
+    static final int ID_LENGTH = 20;
+
+    /** Longest chain of deltas an object may be stored at the end of. */
+    private static final int MAX_DEPTH = 50;
+
+    /** Upper bound on the length of an object's header. */
+    private static final int MAX_HEADER = 32;
+
+    /** My index file. */
+    private final File _index;
+
+    /** My pack file. */
+    private final File _file;
+
+    /** My index file, mapped into memory. */
+    private final MappedByteBuffer _map;
+
+    /** The number of objects I hold. */
+    private final int _count;
+
+    /** The position in my index of the first ID. */
+    private final int _idsStart;
+
+    /** The position in my index of the first offset. */
+    private final long _offsetsStart;
+
+    /** My pack file, opened for reading, once it is needed. */
+    private FileChannel _data;
+
+}
@@ -1,17 +1,20 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Arrays;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
-import static gitlet.Main.COMMITS_FOLDER;
 import static gitlet.Main.CWD_PATH;
-import static gitlet.Utils.plainFilenamesIn;
-import static gitlet.Utils.readContents;
+import static gitlet.Main.HEAD_FILE;
 
 /** Reporter class with authorization to query information from
  * the Committee class and the ability to format it into printable
@@ -22,11 +25,6 @@ public class Reporter {
 
     /** Create a new Reporter object. */
     Reporter() {
-        File committeeFile = new File(COMMITS_FOLDER + "/" + "committee");
-        if (!committeeFile.exists()) {
-            return;
-        }
-        _committee = Utils.readObject(committeeFile, Committee.class);
     }
 
     /** Takes in a line of input, identifies which command to
@@ -36,11 +34,11 @@ public class Reporter {
      */
     public void process(String[] args) {
         String command = args[0];
-        File committeeFile = new File(COMMITS_FOLDER + "/" + "committee");
-        if (!committeeFile.exists()) {
+        if (!HEAD_FILE.exists()) {
             System.out.println("Not in an initialized Gitlet directory.");
+            return;
         }
-        _committee = Utils.readObject(committeeFile, Committee.class);
+        _committee = Committee.load();
         switch (command) {
         case "log":
             preLog(args);
@@ -54,6 +52,9 @@ public class Reporter {
         case "status":
             preStatus(args);
             break;
+        case "diff":
+            preDiff(args);
+            break;
         default:
             System.out.println("No command with that name exists.");
             break;
@@ -100,13 +101,25 @@ public class Reporter {
         }
     }
 
+    /** Sanitize input for diff command.
+     * @param args the command to be evaluated. */
+    private void preDiff(String...args) {
+        if (args.length <= 3) {
+            diff(Arrays.copyOfRange(args, 1, args.length));
+        } else {
+            System.out.println("Incorrect operands");
+        }
+    }
+
     /** Outputs a log of all commits in the current branch, starting
      * from the head commit and ending at the initial commit. OR outputs
      * a log of all commits every created in this repository. Logged
      * information includes SHA1 ID, timestamp, and commit message.
+     * Stops as soon as the output is closed, for instance by a pager,
+     * so that the rest of the history is never read.
      * @param global whether the log should be global or per branch. */
     private void log(boolean global) {
-        ArrayList<String[]> log = new ArrayList<String[]>();
+        Iterable<String[]> log;
         if (global) {
             log = _committee.writeGlobalLog();
         } else {
@@ -120,6 +133,9 @@ public class Reporter {
             }
             System.out.println("Date: " + commit[2]);
             System.out.println(commit[3] + "\n");
+            if (System.out.checkError()) {
+                return;
+            }
         }
     }
 
@@ -139,7 +155,11 @@ public class Reporter {
 
     /** Displays what branches currently exist, and marks the current
      * branch with a *. Also displays what files have been staged for
-     * addition or removal and which files are modified or untracked. */
+     * addition or removal and which files are modified or untracked,
+     * found in a single pass over the head commit, the index and the
+     * working directory, as the monitor reports it if one is running.
+     * The index is saved if any of its entries' stat data was brought up
+     * to date along the way. */
     private void status() {
 
         System.out.println("=== Branches ===");
@@ -154,111 +174,95 @@ public class Reporter {
         }
         System.out.println();
 
-        System.out.println("=== Staged Files ===");
-
-        List<String> addFiles = plainFilenamesIn(".gitlet/stageAdd/");
-        for (String addFile: addFiles) {
-            System.out.println(addFile);
-        }
-        System.out.println();
-
-        System.out.println("=== Removed Files ===");
-
-        List<String> remFiles = plainFilenamesIn(".gitlet/stageRem/");
-        for (String remFile: remFiles) {
-            System.out.println(remFile);
-        }
-        System.out.println();
-
-        findModOrUnTracked();
-
-        System.out.println("=== Modifications Not Staged For Commit ===");
-
-        for (String file: _modifiedFiles) {
-            System.out.println(file);
-        }
-        System.out.println();
-
-        System.out.println("=== Untracked Files ===");
+        Index index = Index.read();
+        Status status = new Status(_committee.head().blobs(),
+                index.entries(), Monitor.working(), index::workingID);
+        index.writeIfRefreshed();
 
-        for (String file: _untrackedFiles) {
-            System.out.println(file);
-        }
-        System.out.println();
+        printSection("Staged Files", status.staged());
+        printSection("Removed Files", status.removed());
+        printSection("Modifications Not Staged For Commit",
+                status.modified());
+        printSection("Untracked Files", status.untracked());
     }
 
-    /** Record the modified and untracked files that I am aware of
-     * so that I can report them in my status. */
-    private void findModOrUnTracked() {
-        List<String> workingFiles = plainFilenamesIn(CWD_PATH);
-        List<String> addFiles = plainFilenamesIn(".gitlet/stageAdd/");
-        List<String> remFiles = plainFilenamesIn(".gitlet/stageRem/");
-        List<String> currFiles = _committee.trackedFiles();
-        HashMap<String, String> allFiles = new HashMap<String, String>();
-        for (String file: workingFiles) {
-            allFiles.put(file, "dummy string");
-        }
-        for (String file: addFiles) {
-            allFiles.put(file, "dummy string");
-        }
-        for (String file: remFiles) {
-            allFiles.put(file, "dummy string");
+    /** Prints the differences, in the unified format, between the
+     * staged and working versions of the files in the index; or between
+     * the files of one commit and the working versions of those files
+     * and of the files in the index; or between the files of two
+     * commits. Files whose versions have the same blob ID are skipped
+     * without being read, and working files are only read if their stat
+     * data shows they may have changed since they were staged.
+     * @param commits no IDs, or the full or abbreviated ID of the commit
+     *                whose files are the old versions, and perhaps the
+     *                ID of the commit whose files are the new versions. */
+    private void diff(String... commits) {
+        Index index = Index.read();
+        TreeMap<String, String> before = new TreeMap<String, String>();
+        TreeMap<String, String> after = null;
+        TreeSet<String> paths = new TreeSet<String>();
+        if (commits.length == 0) {
+            before.putAll(index.blobs());
+        } else {
+            String id = _committee.resolveID(commits[0]);
+            if (id == null) {
+                return;
+            }
+            before = Commit.fromID(id).blobs();
         }
-        for (String file: currFiles) {
-            allFiles.put(file, "dummy string");
+        if (commits.length == 2) {
+            String id = _committee.resolveID(commits[1]);
+            if (id == null) {
+                return;
+            }
+            after = Commit.fromID(id).blobs();
+            paths.addAll(after.keySet());
+        } else {
+            paths.addAll(index.entries().keySet());
         }
+        paths.addAll(before.keySet());
 
-        for (String file: allFiles.keySet()) {
-            boolean trackedInCurr = false;
-            boolean inCWD = false;
-            boolean stagedAdd = false;
-            boolean stagedRem = false;
-            byte[] currVersion = new byte[]{};
-            byte[] workingVersion = new byte[]{};
-            boolean changedInCWD = false;
-            if (_committee.trackedFiles().contains(file)) {
-                trackedInCurr = true;
-                currVersion = _committee.headBytesOfBranch(
-                        _committee.currBranchName()).get(file);
-            }
-            if (workingFiles.contains(file)) {
-                inCWD = true;
-                workingVersion = readContents(new File(CWD_PATH + file));
-            }
-            if (trackedInCurr && inCWD) {
-                changedInCWD = !Arrays.equals(currVersion, workingVersion);
-            }
-            if (addFiles.contains(file)) {
-                stagedAdd = true;
-            }
-            if (remFiles.contains(file)) {
-                stagedRem = true;
-            }
-            boolean case1 = trackedInCurr && changedInCWD && !stagedAdd
-                    && !stagedRem;
-            boolean case2 = stagedAdd && changedInCWD;
-            boolean case3 = stagedAdd && !inCWD;
-            boolean case4 = !stagedRem && trackedInCurr && !inCWD;
-            boolean case5 = inCWD && !stagedAdd && !stagedRem && !trackedInCurr;
-            if (case1 || case2 || case3) {
-                _modifiedFiles.add(file + " (modified)");
-            } else if (case4) {
-                _modifiedFiles.add(file + " (deleted)");
-            } else if (case5) {
-                _untrackedFiles.add(file);
+        OutputStream out = new BufferedOutputStream(System.out, DIFF_BUFFER);
+        try {
+            for (String path: paths) {
+                String oldID = before.get(path);
+                String newID = after != null ? after.get(path)
+                        : index.workingID(path);
+                if (Objects.equals(oldID, newID)) {
+                    continue;
+                }
+                byte[] newContents = null;
+                if (newID != null) {
+                    newContents = after != null ? Archivist.retrieve(newID)
+                            : Utils.readContents(new File(CWD_PATH + path));
+                }
+                Diff.writeUnified(out, path, oldID == null ? null
+                        : Archivist.retrieve(oldID), newContents);
             }
+            out.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Could not write the diff.");
         }
+        index.writeIfRefreshed();
     }
 
-    /** The modified files not staged for commit that I am aware of. */
-    private List<String> _modifiedFiles = new ArrayList<String>();
-
-    /** The untracked files I am aware of. */
-    private List<String> _untrackedFiles = new ArrayList<String>();
+    /** Prints one section of a status report.
+     * @param title the title of the section.
+     * @param lines the lines listed in the section. */
+    private void printSection(String title, List<String> lines) {
+        System.out.println("=== " + title + " ===");
+        for (String line: lines) {
+            System.out.println(line);
+        }
+        System.out.println();
+    }
 
     /** The Committee I report on. */
     private Committee _committee;
 
+    /** Size of the buffer diff output is gathered in. */
+    private static final int DIFF_BUFFER = 1 << 16;
+
     /** Correct gitlet format for a commit date. */
     static final SimpleDateFormat GITLET_FORMAT =
             new SimpleDateFormat("EEE MMM d HH:mm:ss yyyy Z");
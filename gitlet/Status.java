@@ -0,0 +1,138 @@
+package gitlet;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.BiFunction;
+
+/** The state of the working directory and index relative to the head
+ * commit, as reported by status. It is found in one pass that walks the
+ * head commit's files, the index and the working files side by side in
+ * order of path, so each path is looked at once and nothing is looked
+ * up in another collection.
+ * @author Daniel Chung
+ */
+class Status {
+
+    /** The status of the files in three listings, each in order of path.
+     * @param head the IDs of the blobs of the head commit, keyed by path.
+     * @param index the entries of the index, keyed by path.
+     * @param working the files in the working directory.
+     * @param workingID returns the ID of the blob a working file would be
+     *                  archived as, or null if there is no such file,
+     *                  given its path and its stat data from WORKING. It
+     *                  is only called for files in the index, and is
+     *                  given null stat data for those WORKING leaves out,
+     *                  such as ignored files, which it must stat itself. */
+    Status(SortedMap<String, String> head,
+           SortedMap<String, Index.Entry> index,
+           List<WorkingTree.Item> working,
+           BiFunction<String, Index.Entry, String> workingID) {
+        Iterator<Map.Entry<String, String>> heads =
+                head.entrySet().iterator();
+        Iterator<Map.Entry<String, Index.Entry>> entries =
+                index.entrySet().iterator();
+        Iterator<WorkingTree.Item> files = working.iterator();
+        Map.Entry<String, String> h = next(heads);
+        Map.Entry<String, Index.Entry> e = next(entries);
+        WorkingTree.Item w = next(files);
+
+        while (h != null || e != null || w != null) {
+            String path = least(h == null ? null : h.getKey(),
+                    e == null ? null : e.getKey(),
+                    w == null ? null : w.path());
+            boolean inHead = h != null && h.getKey().equals(path);
+            boolean inIndex = e != null && e.getKey().equals(path);
+            boolean inWorking = w != null && w.path().equals(path);
+
+            if (inIndex) {
+                String id = e.getValue().id();
+                if (!inHead || !id.equals(h.getValue())) {
+                    _staged.add(path);
+                }
+                String current = workingID.apply(path,
+                        inWorking ? w.stat() : null);
+                if (current == null) {
+                    _modified.add(path + " (deleted)");
+                } else if (!current.equals(id)) {
+                    _modified.add(path + " (modified)");
+                }
+            } else {
+                if (inHead) {
+                    _removed.add(path);
+                }
+                if (inWorking) {
+                    _untracked.add(path);
+                }
+            }
+
+            if (inHead) {
+                h = next(heads);
+            }
+            if (inIndex) {
+                e = next(entries);
+            }
+            if (inWorking) {
+                w = next(files);
+            }
+        }
+    }
+
+    /** Return the next item of ITEMS, or null if there are no more.
+     * @param items the iterator advanced.
+     * @param <T> the type of the items. */
+    static <T> T next(Iterator<T> items) {
+        return items.hasNext() ? items.next() : null;
+    }
+
+    /** Return the least of three paths, ignoring those that are null.
+     * @param a the first path.
+     * @param b the second path.
+     * @param c the third path. */
+    static String least(String a, String b, String c) {
+        String least = a;
+        if (b != null && (least == null || b.compareTo(least) < 0)) {
+            least = b;
+        }
+        if (c != null && (least == null || c.compareTo(least) < 0)) {
+            least = c;
+        }
+        return least;
+    }
+
+    /** Return the files staged for addition. */
+    List<String> staged() {
+        return _staged;
+    }
+
+    /** Return the files staged for removal. */
+    List<String> removed() {
+        return _removed;
+    }
+
+    /** Return the files whose working versions differ from their staged
+     * ones, each followed by " (modified)" or " (deleted)". */
+    List<String> modified() {
+        return _modified;
+    }
+
+    /** Return the working files that are not in the index. */
+    List<String> untracked() {
+        return _untracked;
+    }
+
+    /** The files staged for addition. */
+    private final List<String> _staged = new ArrayList<String>();
+
+    /** The files staged for removal. */
+    private final List<String> _removed = new ArrayList<String>();
+
+    /** The modified files not staged for commit. */
+    private final List<String> _modified = new ArrayList<String>();
+
+    /** The untracked files. */
+    private final List<String> _untracked = new ArrayList<String>();
+
+}
@@ -0,0 +1,225 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** An immutable snapshot of a directory: the blob ID of every file in
+ * it and the tree ID of every subdirectory. Trees are filed in the
+ * object archive under the SHA1 ID of their contents, so a tree whose
+ * contents did not change between two commits is one shared object, and
+ * a commit only needs to write the trees along the paths it changed.
+ *
+ * A tree is filed as a format version byte followed by its entries in
+ * order of name, each a kind byte, the 20-byte ID of the entry, and the
+ * name as a varint length followed by its UTF-8 bytes.
+ * @author Daniel Chung
+ */
+class Tree {
+
+    /** A tree with the given entries.
+     * @param blobs the IDs of the blobs of my files, keyed by name.
+     * @param trees the IDs of the trees of my subdirectories, keyed by
+     *              name. */
+    Tree(TreeMap<String, String> blobs, TreeMap<String, String> trees) {
+        _blobs = blobs;
+        _trees = trees;
+        _id = Utils.sha1(encode());
+    }
+
+    /** A tree with the given entries that is already filed under ID.
+     * @param id my SHA1 ID.
+     * @param blobs the IDs of the blobs of my files, keyed by name.
+     * @param trees the IDs of the trees of my subdirectories, keyed by
+     *              name. */
+    private Tree(String id, TreeMap<String, String> blobs,
+                 TreeMap<String, String> trees) {
+        _blobs = blobs;
+        _trees = trees;
+        _id = id;
+    }
+
+    /** Retrieve the tree filed in the archive under an ID.
+     * @param id the SHA1 ID of the tree sought.
+     * @return the tree filed under that ID. */
+    static Tree fromID(String id) {
+        return decode(id, Archivist.retrieve(id));
+    }
+
+    /** Return the tree whose contents, as filed in the archive, are
+     * RECORD.
+     * @param id the SHA1 ID the tree is filed under.
+     * @param record the bytes the tree is filed as.
+     * @return the tree. */
+    static Tree decode(String id, byte[] record) {
+        TreeMap<String, String> blobs = new TreeMap<String, String>();
+        TreeMap<String, String> trees = new TreeMap<String, String>();
+        ByteBuffer in = ByteBuffer.wrap(record);
+        if (in.get() != FORMAT_VERSION) {
+            throw Utils.error("Tree %s is in an unknown format.", id);
+        }
+        while (in.hasRemaining()) {
+            byte kind = in.get();
+            String entryID = Utils.readID(in);
+            String name = Utils.readString(in);
+            if (kind == BLOB) {
+                blobs.put(name, entryID);
+            } else {
+                trees.put(name, entryID);
+            }
+        }
+        return new Tree(id, blobs, trees);
+    }
+
+    /** Return the tree made by applying changes to me, and file every
+     * tree that changed in the archive. Subdirectories that no change
+     * touches are carried over by ID without being read, and
+     * subdirectories left empty are dropped.
+     * @param additions the IDs of the blobs of the files to be added or
+     *                  replaced, keyed by path.
+     * @param removals the paths of the files to be removed.
+     * @return the changed tree. */
+    Tree update(Map<String, String> additions, Collection<String> removals) {
+        TreeMap<String, String> blobs = new TreeMap<String, String>(_blobs);
+        TreeMap<String, String> trees = new TreeMap<String, String>(_trees);
+        HashMap<String, Map<String, String>> subAdditions =
+                new HashMap<String, Map<String, String>>();
+        HashMap<String, Collection<String>> subRemovals =
+                new HashMap<String, Collection<String>>();
+
+        for (Map.Entry<String, String> addition: additions.entrySet()) {
+            String path = addition.getKey();
+            int slash = path.indexOf('/');
+            if (slash == -1) {
+                blobs.put(path, addition.getValue());
+            } else {
+                subAdditions.computeIfAbsent(path.substring(0, slash),
+                        k -> new HashMap<String, String>())
+                        .put(path.substring(slash + 1), addition.getValue());
+            }
+        }
+        for (String path: removals) {
+            int slash = path.indexOf('/');
+            if (slash == -1) {
+                blobs.remove(path);
+            } else {
+                subRemovals.computeIfAbsent(path.substring(0, slash),
+                        k -> new ArrayList<String>())
+                        .add(path.substring(slash + 1));
+            }
+        }
+
+        HashSet<String> touched = new HashSet<String>(subAdditions.keySet());
+        touched.addAll(subRemovals.keySet());
+        for (String dir: touched) {
+            Tree sub = trees.containsKey(dir) ? fromID(trees.get(dir)) : EMPTY;
+            Tree changed = sub.update(
+                    subAdditions.getOrDefault(dir,
+                            new HashMap<String, String>()),
+                    subRemovals.getOrDefault(dir,
+                            new ArrayList<String>()));
+            if (changed.isEmpty()) {
+                trees.remove(dir);
+            } else {
+                trees.put(dir, changed.id());
+            }
+        }
+
+        Tree result = new Tree(blobs, trees);
+        Archivist.store(result.id(), result.encode());
+        return result;
+    }
+
+    /** Return the blob IDs of every file under me, keyed by their paths
+     * relative to me. */
+    TreeMap<String, String> files() {
+        TreeMap<String, String> files = new TreeMap<String, String>();
+        collect("", files);
+        return files;
+    }
+
+    /** Adds the blob IDs of every file under me to FILES, keyed by their
+     * paths with PREFIX in front.
+     * @param prefix the path of my directory, ending in a slash, or the
+     *               empty string for the root.
+     * @param files the map being filled in. */
+    private void collect(String prefix, Map<String, String> files) {
+        for (Map.Entry<String, String> blob: _blobs.entrySet()) {
+            files.put(prefix + blob.getKey(), blob.getValue());
+        }
+        for (Map.Entry<String, String> tree: _trees.entrySet()) {
+            fromID(tree.getValue()).collect(prefix + tree.getKey() + "/",
+                    files);
+        }
+    }
+
+    /** Return the IDs of the blobs of the files directly in me, keyed by
+     * name. */
+    Map<String, String> blobs() {
+        return _blobs;
+    }
+
+    /** Return the IDs of the trees of my subdirectories, keyed by name. */
+    Map<String, String> trees() {
+        return _trees;
+    }
+
+    /** Return whether I have no entries at all. */
+    boolean isEmpty() {
+        return _blobs.isEmpty() && _trees.isEmpty();
+    }
+
+    /** Return my SHA1 ID. */
+    String id() {
+        return _id;
+    }
+
+    /** Return my contents as they are filed in the archive. */
+    byte[] encode() {
+        TreeMap<String, Byte> kinds = new TreeMap<String, Byte>();
+        for (String name: _blobs.keySet()) {
+            kinds.put(name, BLOB);
+        }
+        for (String name: _trees.keySet()) {
+            kinds.put(name, TREE);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(FORMAT_VERSION);
+        for (Map.Entry<String, Byte> entry: kinds.entrySet()) {
+            String name = entry.getKey();
+            out.write(entry.getValue());
+            Utils.writeID(out, entry.getValue() == BLOB
+                    ? _blobs.get(name) : _trees.get(name));
+            Utils.writeString(out, name);
+        }
+        return out.toByteArray();
+    }
+
+    /** The version of the format written by encode. */
+    private static final byte FORMAT_VERSION = 1;
+
+    /** The kind of an entry naming a file. */
+    private static final byte BLOB = 1;
+
+    /** The kind of an entry naming a subdirectory. */
+    private static final byte TREE = 2;
+
+    /** The tree with no entries. */
+    static final Tree EMPTY = new Tree(new TreeMap<String, String>(),
+            new TreeMap<String, String>());
+
+    /** The IDs of the blobs of the files directly in me, keyed by name. */
+    private final TreeMap<String, String> _blobs;
+
+    /** The IDs of the trees of my subdirectories, keyed by name. */
+    private final TreeMap<String, String> _trees;
+
+    /** My SHA1 ID. */
+    private final String _id;
+
+}
@@ -9,8 +9,8 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardCopyOption;
@@ -136,6 +136,26 @@ class Utils {
         }
     }
 
+    /** Write CONTENTS to a scratch file next to FILE and rename it over
+     *  FILE, so that a reader sees either the old contents or the new.
+     *  Throws GitletException in case of problems. */
+    static void writeAtomically(File file, byte[] contents) {
+        File scratch = null;
+        try {
+            scratch = File.createTempFile(file.getName() + "-", null,
+                    file.getAbsoluteFile().getParentFile());
+            Files.write(scratch.toPath(), contents);
+            Files.move(scratch.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            if (scratch != null) {
+                scratch.delete();
+            }
+            throw error("Could not write %s.", file);
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
@@ -239,89 +259,114 @@ class Utils {
 
     /* METHODS IMPLEMENTED BY @DANIEL CHUNG */
 
-    /** Copy a file from one directory to another. If the file already exists
-     * in the target directory, it will be overwritten. It the file doesnt't
-     * exist in the target directory, an error will be thrown if the settings
-     * are strict, or a the file will be created there if the settings are not
-     * strict.
-     * @param srcPath the path to the source directory.
-     * @param destPath the path to the destination directory.
-     * @param destDIR the destination directory.
-     * @param fileName the name of the file to be moved. */
-    static void moveFile(String srcPath, String destPath,
-                         File destDIR, String fileName) {
-        List<String> sourceFiles = plainFilenamesIn(srcPath);
-        if (!sourceFiles.contains(fileName)) {
-            System.out.println("File does not exist.");
-            return;
+    /** Write VALUE, which must not be negative, to OUT as a varint: seven
+     *  bits per byte, least significant first, with the high bit of every
+     *  byte but the last set. */
+    static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
         }
-        Path source = Paths.get(srcPath + "/" + fileName);
+        out.write((int) value);
+    }
 
-        File placeHolder = new File(destPath + fileName);
-        join(destDIR, destPath + fileName);
-        try {
-            placeHolder.createNewFile();
-        } catch (IOException ex) {
-            System.out.println("Path leading to file is"
-                    + " imcomplete or malformed.");
+    /** Return the varint at the current position of IN, advancing past
+     *  it. */
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
         }
+    }
 
-        Path dest = Paths.get(destPath + fileName);
+    /** Return the hexadecimal numeral for the ID whose bytes are ID. */
+    static String hex(byte[] id) {
+        StringBuilder result = new StringBuilder();
+        for (byte b: id) {
+            result.append(Character.forDigit((b >> 4) & 0xf, 16));
+            result.append(Character.forDigit(b & 0xf, 16));
+        }
+        return result.toString();
+    }
 
-        try {
-            Files.copy(source, dest, StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException ex) {
-            System.out.println("FIXME");
+    /** Return the bytes of the ID written as the hexadecimal numeral
+     *  ID. */
+    static byte[] unhex(String id) {
+        byte[] result = new byte[id.length() / 2];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) ((Character.digit(id.charAt(2 * i), 16) << 4)
+                    | Character.digit(id.charAt(2 * i + 1), 16));
         }
+        return result;
     }
 
-    /** Recreate a version of a file from its bytes and move it to the CWD.
-     * @param fileBytes the byte array representing the contents of the file.
-     * @param fileName the name of the file to be reactivated. */
-    static void reactivate(byte[] fileBytes, String fileName) {
-        File placeHolder = new File(".gitlet/blobs/" + fileName);
-        join(BLOBS_FOLDER, ".gitlet/blobs/" + fileName);
+    /** Return a fresh SHA-1 message digest. */
+    static MessageDigest sha1Digest() {
         try {
-            placeHolder.createNewFile();
-            writeContents(placeHolder, fileBytes);
-        } catch (IOException ex) {
-            System.out.println("Path leading to file is"
-                    + " imcomplete or malformed.");
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
         }
-        moveFile(".gitlet/blobs/", CWD_PATH, CWD, fileName);
     }
 
-    /** Clear the staging area. */
-    static void clearStage() {
-        for (File file: STAGEADD_FOLDER.listFiles()) {
-            if (!file.isDirectory()) {
-                file.delete();
-            }
-        }
-        for (File file: STAGEREM_FOLDER.listFiles()) {
-            if (!file.isDirectory()) {
-                file.delete();
-            }
-        }
+    /** Write the hexadecimal ID to OUT as its 20 binary bytes. */
+    static void writeID(ByteArrayOutputStream out, String id) {
+        out.write(unhex(id), 0, UID_LENGTH / 2);
     }
 
-    /** Clear the addition staging area but only this one file.
-     * @param fileName the name of the file to be removed from
-     *                 the staging area. */
-    static void clearStageOf(String fileName) {
-        File file = new File(".gitlet/stageAdd/" + fileName);
-        if (!file.isDirectory()) {
+    /** Return the 20-byte binary ID at the current position of IN as a
+     *  hexadecimal numeral, advancing past it. */
+    static String readID(ByteBuffer in) {
+        byte[] id = new byte[UID_LENGTH / 2];
+        in.get(id);
+        return hex(id);
+    }
+
+    /** Write S to OUT as the varint length of its UTF-8 encoding followed
+     *  by that encoding. */
+    static void writeString(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /** Return the string written by writeString at the current position
+     *  of IN, advancing past it. */
+    static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[(int) readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Recreate a version of a file from its bytes in the CWD. The old
+     * file is removed first, so that a file checkout linked to a shared
+     * copy is replaced rather than written through.
+     * @param fileBytes the byte array representing the contents of the file.
+     * @param fileName the name of the file to be reactivated. */
+    static void reactivate(byte[] fileBytes, String fileName) {
+        File file = new File(CWD_PATH + fileName);
+        file.getParentFile().mkdirs();
+        if (file.isFile()) {
             file.delete();
         }
+        writeContents(file, fileBytes);
     }
 
-    /** Deletes a file within a specific directory.
-     * @param dir the path to the directory where this file exists.
-     * @param fileName the name of the file to be surgically deleted. */
-    static void surgicalDelete(String dir, String fileName) {
-        File deleteMe = new File(dir + fileName);
-        if (!deleteMe.isDirectory()) {
-            deleteMe.delete();
+    /** Deletes the file at a path in the working directory if there is
+     *  one, and then each directory above it that is left empty, up to
+     *  the working directory itself. */
+    static void deleteWorking(String path) {
+        File file = new File(CWD_PATH + path);
+        if (!file.isFile() || !file.delete()) {
+            return;
+        }
+        File dir = file.getParentFile();
+        while (!dir.equals(CWD) && dir.delete()) {
+            dir = dir.getParentFile();
         }
     }
 }
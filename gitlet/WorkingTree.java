@@ -0,0 +1,169 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import static gitlet.Main.CWD;
+import static gitlet.Main.CWD_PATH;
+
+/** A walk of the files under a directory and all of its
+ * subdirectories, apart from the .gitlet folder and whatever the
+ * .gitletignore file ignores. Each directory is
+ * listed by its own task in a fork/join pool, so the walk of a deep
+ * tree is spread over every core, and each task reads the stat data of
+ * its own files. The results come back as one list in order of path,
+ * ready to be merged with the other sorted listings status compares.
+ * Ignored directories are skipped as soon as their names are read,
+ * without being listed, so the cost of a walk does not depend on what
+ * they hold. Symbolic links are never followed into: a link to a file
+ * is listed as that file, and any other link is passed over, so a link
+ * back up the tree cannot send the walk round in circles.
+ * @author Daniel Chung
+ */
+class WorkingTree {
+
+    /** Not to be instantiated. */
+    private WorkingTree() {
+    }
+
+    /** Return every file in the working directory and its
+     * subdirectories that is not ignored, in order of path. */
+    static List<Item> walk() {
+        IgnoreRules rules = IgnoreRules.load();
+        return POOL.invoke(new Scan(CWD, "", rules, rules.start()));
+    }
+
+    /** Return every file under a directory in the working directory
+     * that is not ignored, in order of path. The directory itself is
+     * walked even if it is ignored.
+     * @param dir the path of the directory, relative to the working
+     *            directory. */
+    static List<Item> walk(String dir) {
+        IgnoreRules rules = IgnoreRules.load();
+        String prefix = dir.replaceAll("/+$", "") + "/";
+        if (prefix.equals("./") || prefix.equals("/")) {
+            return walk();
+        }
+        return POOL.invoke(new Scan(new File(CWD_PATH + prefix), prefix,
+                rules, rules.stepPath(prefix)));
+    }
+
+    /** One file found by a walk. */
+    static class Item {
+
+        /** A file at PATH whose stat data is STAT.
+         * @param path the file's path, relative to the working directory.
+         * @param stat the file's stat data, with no blob ID. */
+        Item(String path, Index.Entry stat) {
+            _path = path;
+            _stat = stat;
+        }
+
+        /** Return my path, relative to the working directory. */
+        String path() {
+            return _path;
+        }
+
+        /** Return my stat data. */
+        Index.Entry stat() {
+            return _stat;
+        }
+
+        /** My path. */
+        private final String _path;
+
+        /** My stat data. */
+        private final Index.Entry _stat;
+    }
+
+    /** The walk of one directory, which forks a walk of each of its
+     * subdirectories. */
+    private static class Scan extends RecursiveTask<List<Item>> {
+
+        /** A walk of DIR, whose path relative to the working directory
+         * is PREFIX.
+         * @param dir the directory.
+         * @param prefix its path, ending in a slash, or the empty string
+         *               for the working directory.
+         * @param rules the ignore rules.
+         * @param state the state of RULES at DIR. */
+        Scan(File dir, String prefix, IgnoreRules rules,
+             List<IgnoreRules.Node> state) {
+            _dir = dir;
+            _prefix = prefix;
+            _rules = rules;
+            _state = state;
+        }
+
+        /** Return the files under my directory, in order of path. Paths
+         * under a subdirectory NAME all begin with NAME and a slash, so
+         * they sort as a block wherever NAME/ would, and the sorted
+         * results of the subdirectories only need to be put in place. */
+        @Override
+        protected List<Item> compute() {
+            File[] children = _dir.listFiles();
+            if (children == null) {
+                return new ArrayList<Item>();
+            }
+            TreeMap<String, Object> parts = new TreeMap<String, Object>();
+            for (File child: children) {
+                String name = child.getName();
+                boolean isDirectory = Files.isDirectory(child.toPath(),
+                        LinkOption.NOFOLLOW_LINKS);
+                List<IgnoreRules.Node> state = _state.isEmpty() ? _state
+                        : _rules.step(_state, name);
+                if (IgnoreRules.ignores(state, isDirectory)) {
+                    continue;
+                }
+                if (isDirectory) {
+                    if (_prefix.isEmpty() && name.equals(".gitlet")) {
+                        continue;
+                    }
+                    Scan sub = new Scan(child, _prefix + name + "/", _rules,
+                            state);
+                    sub.fork();
+                    parts.put(name + "/", sub);
+                } else if (child.isFile()) {
+                    parts.put(name, child);
+                }
+            }
+
+            List<Item> result = new ArrayList<Item>();
+            for (Map.Entry<String, Object> part: parts.entrySet()) {
+                if (part.getValue() instanceof Scan) {
+                    result.addAll(((Scan) part.getValue()).join());
+                } else {
+                    result.add(new Item(_prefix + part.getKey(),
+                            Index.Entry.of((File) part.getValue(), null)));
+                }
+            }
+            return result;
+        }
+
+        /** The directory I walk. */
+        private final File _dir;
+
+        /** The path of my directory relative to the working directory. */
+        private final String _prefix;
+
+        /** The ignore rules. */
+        private final IgnoreRules _rules;
+
+        /** The state of the ignore rules at my directory. */
+        private final List<IgnoreRules.Node> _state;
+
+        /** The version of my serialized form. */
+        private static final long serialVersionUID = 1L;
+    }
+
+    /** The pool walks run in, with a thread for every core. */
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+}
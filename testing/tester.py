@@ -3,7 +3,7 @@ from subprocess import \
      check_output, PIPE, STDOUT, DEVNULL, CalledProcessError, TimeoutExpired
 from os.path import abspath, basename, dirname, exists, join, splitext
 from getopt import getopt, GetoptError
-from os import chdir, environ, getcwd, mkdir, remove, access, W_OK
+from os import chdir, environ, getcwd, mkdir, remove, symlink, access, W_OK
 from shutil import copyfile, rmtree
 from math import log
 
@@ -49,6 +49,8 @@ The instructions each have one of the following forms:
           Copy the contents of src/F into a file named NAME.
    - NAME
           Delete the file named NAME.
+   L NAME TARGET
+          Create a symbolic link named NAME pointing at TARGET.
    > COMMAND OPERANDS
    LINE1
    LINE2
@@ -144,6 +146,13 @@ def doCopy(dest, src, dir):
     except OSError:
         raise ValueError("file {} could not be copied to {}".format(src, dest))
 
+def doLink(name, target, dir):
+    try:
+        doDelete(name, dir)
+        symlink(target, join(dir, name))
+    except OSError:
+        raise ValueError("link {} to {} could not be made".format(name, target))
+
 def doExecute(cmnd, dir, timeout):
     here = getcwd()
     out = ""
@@ -300,6 +309,8 @@ def doTest(test):
                 doCopy(Group(1), Group(2), cdir)
             elif Match(r'-\s*(\S+)', line):
                 doDelete(Group(1), cdir)
+            elif Match(r'L\s*(\S+)\s+(\S+)', line):
+                doLink(Group(1), Group(2), cdir)
             elif Match(r'>\s*(.*)', line):
                 cmnd = Group(1)
                 expected = []